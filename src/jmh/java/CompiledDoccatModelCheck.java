@@ -0,0 +1,87 @@
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+// Compares CompiledDoccatModel with DocumentCategorizerME on the lemmas of
+// trainset.txt, or of the file given as first argument: counts the tweets
+// they disagree on, and times both. The model is trained with the
+// TrainingConfig settings given as second argument, if any. When the
+// benchmarks are built with the vector profile too and the JVM runs with
+// --add-modules jdk.incubator.vector, the Vector API kernel is compared as
+// well.
+//
+// Built with the benchmarks, see pom.xml, and run from benchmarks.jar:
+//   java -cp target/benchmarks.jar CompiledDoccatModelCheck [train file] [settings]
+public class CompiledDoccatModelCheck {
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "src/main/trainset.txt";
+        if (args.length > 1)
+            SentimentAnalysis.trainingConfig = TrainingConfig.parse(args[1]);
+        SentimentAnalysis.trainModel(Preprocessing.trainFileSamples(path));
+        DoccatModel model = SentimentAnalysis.getModel();
+        List<CompiledDoccatModel> compiledModels = new ArrayList<>();
+        compiledModels.add(CompiledDoccatModel.compile(model, false));
+        CompiledDoccatModel vectorized = CompiledDoccatModel.compile(model, true);
+        if (vectorized.isVectorized())
+            compiledModels.add(vectorized);
+        else
+            System.out.println("The Vector API kernel is not available, comparing the scalar code only");
+        System.out.println("Compiled " + vectorized.getNumTokens() + " tokens, " + vectorized.getNumOutcomes()
+                + " outcomes");
+
+        List<String> lemmas = new ArrayList<>();
+        try (Scanner scan = new Scanner(new File(path))) {
+            while (scan.hasNextLine()) {
+                String line = scan.nextLine();
+                int space = line.indexOf(' ');
+                lemmas.add(space < 0 ? "" : line.substring(space + 1));
+            }
+        } catch (FileNotFoundException exception) {
+            exception.printStackTrace();
+            return;
+        }
+
+        DocumentCategorizerME categorizer = new DocumentCategorizerME(model);
+        for (CompiledDoccatModel compiled : compiledModels) {
+            String name = compiled.isVectorized() ? "Vector API" : "Scalar";
+            double[] probabilities = new double[compiled.getScoreLength()];
+            int differences = 0;
+            double maxError = 0;
+            for (String line : lemmas) {
+                double[] expected = categorizer.categorize(line.split(" "));
+                String category = categorizer.getBestCategory(expected);
+                compiled.score(line, probabilities);
+                for (int i = 0; i < expected.length; i++)
+                    maxError = Math.max(maxError, Math.abs(expected[i] - probabilities[i]));
+                if (!category.equals(compiled.getOutcome(compiled.categorize(line, probabilities)))
+                        || !category.equals(compiled.getOutcome(compiled.categorize(line.split(" "), probabilities))))
+                    differences++;
+            }
+            System.out.println(name + ": " + differences + " of " + lemmas.size()
+                    + " tweets categorized differently, largest probability difference " + maxError);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int sink = 0;
+            for (String line : lemmas) sink += categorizer.getBestCategory(categorizer.categorize(line.split(" "))).length();
+            StringBuilder report = new StringBuilder(String.format("DocumentCategorizerME %.0f tweets/s",
+                    lemmas.size() / ((System.nanoTime() - start) / 1e9)));
+            for (CompiledDoccatModel compiled : compiledModels) {
+                double[] scores = new double[compiled.getScoreLength()];
+                start = System.nanoTime();
+                for (String line : lemmas) sink += compiled.getOutcome(compiled.categorize(line, scores)).length();
+                report.append(String.format(", %s %.0f tweets/s", compiled.isVectorized() ? "Vector API" : "scalar",
+                        lemmas.size() / ((System.nanoTime() - start) / 1e9)));
+            }
+            System.out.println(report + " (" + sink + ")");
+        }
+    }
+}
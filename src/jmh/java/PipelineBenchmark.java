@@ -0,0 +1,294 @@
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.util.ObjectStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// One measured step of the pipeline
+interface PipelineStage {
+    void run() throws IOException;
+}
+
+// End to end benchmark of the pipeline. For every corpus size a csv file of
+// that many tweets is synthesized by drawing rows of bitcointweets.csv at
+// random, with replacement and a fixed seed, so runs are reproducible. Then
+// Preprocess, trainModel and testModel run on it as in SentimentAnalysis,
+// each timed on its own, with its peak heap use. The results are printed and
+// written as JSON. The train and test text files go to DATA_DIRECTORY, not
+// to src/main.
+// Corpora larger than the csv file draw every row many times. Repeated rows
+// would be dropped by duplicate removal and served from the lemma cache, so
+// the larger corpora would mostly time those. Every repeated draw therefore
+// gets a token of its own appended, see synthesizeCorpus, which makes all
+// rows distinct, unless --repeat-rows is given. The JSON records which.
+// Resampled corpora still share most of their words, so test tweets look
+// like train tweets and the accuracy grows with the corpus size. It is
+// reported to catch broken runs, not as a measure of model quality.
+//
+// Built with the benchmarks, see pom.xml, and run from benchmarks.jar:
+//   java -cp target/benchmarks.jar PipelineBenchmark [sizes] [result file] [--streaming] [--fast-lemmas]
+//        [--dedup] [--near-dedup] [--spill-samples] [--repeat-rows]
+// eg. PipelineBenchmark 10000,100000,1000000 target/pipeline-benchmark.json
+public class PipelineBenchmark {
+
+    public static final String SOURCE_PATH = "src/main/bitcointweets.csv";
+    public static final String CORPUS_DIRECTORY = "target/corpora";
+    public static final String DATA_DIRECTORY = "target/pipeline-benchmark";
+
+    // Seed of the resampling
+    public static final long SEED = 2018;
+
+    // Measurements of one stage
+    static final class StageResult {
+        final String name;
+        final long items; // Tweets handled by the stage
+        final double seconds;
+        final long peakHeapBytes;
+
+        StageResult(String name, long items, double seconds, long peakHeapBytes) {
+            this.name = name;
+            this.items = items;
+            this.seconds = seconds;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        double tweetsPerSecond() {
+            return seconds == 0 ? 0 : items / seconds;
+        }
+    }
+
+    // Measurements of the whole pipeline on one corpus
+    static final class CorpusResult {
+        final int tweets;
+        final List<StageResult> stages;
+        final double accuracy;
+
+        CorpusResult(int tweets, List<StageResult> stages, double accuracy) {
+            this.tweets = tweets;
+            this.stages = stages;
+            this.accuracy = accuracy;
+        }
+
+        double totalSeconds() {
+            double seconds = 0;
+            for (StageResult stage : stages) seconds += stage.seconds;
+            return seconds;
+        }
+
+        long peakHeapBytes() {
+            long peak = 0;
+            for (StageResult stage : stages) peak = Math.max(peak, stage.peakHeapBytes);
+            return peak;
+        }
+    }
+
+    // Writes a csv file with Tweet and Tag columns and numTweets rows, drawn
+    // with replacement from the complete rows of sourcePath. If distinct is
+    // set, the tweet of a row drawn before gets " r" and the row number
+    // appended, a token found in no other row, which training drops with
+    // the default cutoff.
+    public static void synthesizeCorpus(String sourcePath, String targetPath, int numTweets, long seed,
+                                        boolean distinct) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (CsvRowReader reader = new CsvRowReader(
+                Files.newBufferedReader(Paths.get(sourcePath), StandardCharsets.UTF_8), "Tweet", "Tag")) {
+            String[] row;
+            while ((row = reader.next()) != null) {
+                if (!reader.lastRowHasMissingValues()) rows.add(row);
+            }
+        }
+        if (rows.isEmpty())
+            throw new IllegalArgumentException("No complete rows in " + sourcePath);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        BitSet drawn = new BitSet(rows.size());
+        try (LineWriter out = new LineWriter(targetPath, StandardCharsets.UTF_8, LineWriter.DEFAULT_BUFFER_SIZE)) {
+            out.writeLine("Tweet,Tag");
+            for (int i = 0; i < numTweets; i++) {
+                int index = random.nextInt(rows.size());
+                String[] row = rows.get(index);
+                String tweet = distinct && drawn.get(index) ? row[0] + " r" + i : row[0];
+                drawn.set(index);
+                out.writeLine(csvField(tweet) + "," + csvField(row[1]));
+            }
+        }
+    }
+
+    // Runs the pipeline on a corpus of numTweets tweets and returns the
+    // measurements of every stage and the accuracy of the model.
+    public static CorpusResult runPipeline(String corpusPath, int numTweets) throws IOException {
+        // Start every corpus from an empty lemma cache, so smaller corpora
+        // do not speed up larger ones
+        LemmatizationEngine.getInstance().getCache().clear();
+
+        List<StageResult> results = new ArrayList<>();
+        MetricsRegistry.Counter trainRowCounter = MetricsRegistry.getInstance().counter("preprocess.trainRows");
+        long trainRowsBefore = trainRowCounter.getCount();
+        List<ObjectStream<DocumentSample>> samples = new ArrayList<>(1);
+        results.add(measure("preprocess", numTweets,
+                () -> samples.add(Preprocessing.Preprocess(corpusPath, numTweets))));
+
+        long trainRows = trainRowCounter.getCount() - trainRowsBefore;
+        results.add(measure("train", trainRows, () -> SentimentAnalysis.trainModel(samples.get(0))));
+        samples.get(0).close();
+
+        int[][] matrix = new int[3][3];
+        StageResult test = measure("test", 0, () -> {
+            SentimentAnalysis.testModel();
+            int[][] result = SentimentAnalysis.createResult();
+            for (int i = 0; i < 3; i++) matrix[i] = result[i];
+        });
+        int total = 0;
+        int correct = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                total += matrix[i][j];
+                if (i == j) correct += matrix[i][j];
+            }
+        }
+        results.add(new StageResult(test.name, total, test.seconds, test.peakHeapBytes));
+        return new CorpusResult(numTweets, results, total == 0 ? 0 : (double) correct / total);
+    }
+
+    // Runs a stage and measures its wall time and the peak heap use during
+    // the stage. The peak is the sum of the peaks of the heap memory pools,
+    // which may have been reached at different times, so it is an upper
+    // bound.
+    static StageResult measure(String name, long items, PipelineStage stage) throws IOException {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        long start = System.nanoTime();
+        stage.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return new StageResult(name, items, seconds, peak);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String sizes = "10000,100000,1000000";
+        String resultPath = "target/pipeline-benchmark.json";
+        boolean distinctRows = true;
+        int positional = 0;
+        for (String arg : args) {
+            if (arg.equals("--streaming"))
+                Preprocessing.streamingIngestion = true;
+            else if (arg.equals("--fast-lemmas"))
+                LemmatizationEngine.setFastPath(true);
+            else if (arg.equals("--dedup"))
+                Preprocessing.dropDuplicates = true;
+            else if (arg.equals("--near-dedup"))
+                Preprocessing.dropNearDuplicates = true;
+            else if (arg.equals("--spill-samples"))
+                Preprocessing.spillTrainSamples = true;
+            else if (arg.equals("--repeat-rows"))
+                distinctRows = false;
+            else if (arg.startsWith("--"))
+                throw new IllegalArgumentException("Unknown option " + arg);
+            else if (positional++ == 0)
+                sizes = arg;
+            else
+                resultPath = arg;
+        }
+
+        // Load the CoreNLP models up front, so their loading time is not
+        // charged to the first corpus
+        LemmatizationEngine.getInstance();
+
+        new File(CORPUS_DIRECTORY).mkdirs();
+        new File(DATA_DIRECTORY).mkdirs();
+        Preprocessing.dataDirectory = DATA_DIRECTORY;
+        List<CorpusResult> results = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            int numTweets = Integer.parseInt(size.trim());
+            String corpusPath = CORPUS_DIRECTORY + "/tweets-" + numTweets + ".csv";
+            System.out.println("Synthesizing corpus of " + numTweets + " tweets...");
+            synthesizeCorpus(SOURCE_PATH, corpusPath, numTweets, SEED, distinctRows);
+
+            CorpusResult result = runPipeline(corpusPath, numTweets);
+            results.add(result);
+            System.out.printf(Locale.ROOT, "%d tweets: %.1f s, %.1f tweets/s, peak heap %d MiB, accuracy %.3f%n",
+                    numTweets, result.totalSeconds(), numTweets / result.totalSeconds(),
+                    result.peakHeapBytes() >> 20, result.accuracy);
+        }
+
+        String json = toJson(results, distinctRows);
+        try (LineWriter out = new LineWriter(resultPath, StandardCharsets.UTF_8, LineWriter.DEFAULT_BUFFER_SIZE)) {
+            out.write(json);
+        }
+        System.out.print(json);
+        System.out.println("Results written to " + resultPath);
+    }
+
+    // Formats the results, together with the JVM and the preprocessing
+    // configuration they were measured with, as a JSON document
+    static String toJson(List<CorpusResult> results, boolean distinctRows) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": ").append(jsonString(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+        json.append("  \"configuration\": ").append(jsonString(Preprocessing.configuration())).append(",\n");
+        json.append("  \"seed\": ").append(SEED).append(",\n");
+        json.append("  \"distinctRows\": ").append(distinctRows).append(",\n");
+        json.append("  \"corpora\": [");
+        for (int c = 0; c < results.size(); c++) {
+            CorpusResult result = results.get(c);
+            json.append(c == 0 ? "\n" : ",\n");
+            json.append("    {\n");
+            json.append("      \"tweets\": ").append(result.tweets).append(",\n");
+            json.append("      \"stages\": [");
+            for (int s = 0; s < result.stages.size(); s++) {
+                StageResult stage = result.stages.get(s);
+                json.append(s == 0 ? "\n" : ",\n");
+                json.append("        {\"name\": ").append(jsonString(stage.name))
+                        .append(", \"tweets\": ").append(stage.items)
+                        .append(", \"seconds\": ").append(String.format(Locale.ROOT, "%.3f", stage.seconds))
+                        .append(", \"tweetsPerSecond\": ")
+                        .append(String.format(Locale.ROOT, "%.1f", stage.tweetsPerSecond()))
+                        .append(", \"peakHeapBytes\": ").append(stage.peakHeapBytes).append("}");
+            }
+            json.append("\n      ],\n");
+            json.append("      \"totalSeconds\": ")
+                    .append(String.format(Locale.ROOT, "%.3f", result.totalSeconds())).append(",\n");
+            json.append("      \"tweetsPerSecond\": ")
+                    .append(String.format(Locale.ROOT, "%.1f", result.tweets / result.totalSeconds())).append(",\n");
+            json.append("      \"peakHeapBytes\": ").append(result.peakHeapBytes()).append(",\n");
+            json.append("      \"accuracy\": ").append(String.format(Locale.ROOT, "%.4f", result.accuracy)).append("\n");
+            json.append("    }");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    // Quotes a csv field, doubling the quotes inside it
+    private static String csvField(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // Quotes a JSON string
+    static String jsonString(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,47 @@
+import tech.tablesaw.api.Table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Measures the TokenLemmaDictionary fast path against the full pipeline. The
+// dictionary learns from the first half of the first numTweets tweets of the
+// csv file, then both paths lemmatize the second half. Prints how many tweets
+// the fast path could answer, and how many of those answers differ from
+// CoreNLP.
+//
+// Built with the benchmarks, see pom.xml, and run from benchmarks.jar:
+//   java -cp target/benchmarks.jar TokenLemmaDictionaryCheck [csv file] [numTweets]
+public class TokenLemmaDictionaryCheck {
+
+    public static void main(String[] args) throws IOException {
+        String filePath = args.length > 0 ? args[0] : "src/main/bitcointweets.csv";
+        int numTweets = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        Table dataFrame = Preprocessing.readCSV(filePath, "Tweet").first(numTweets);
+        List<String> tweets = new ArrayList<>();
+        for (int i = 0; i < dataFrame.rowCount(); i++) {
+            tweets.add(Preprocessing.preprocessString(dataFrame.column("Tweet").getString(i)));
+        }
+
+        LemmatizationEngine engine = LemmatizationEngine.getInstance();
+        LemmatizationEngine.setFastPath(true);
+        int half = tweets.size() / 2;
+        tweets.subList(0, half).parallelStream().forEach(engine::annotateAndLearn);
+
+        int answered = 0;
+        int differing = 0;
+        for (String tweet : tweets.subList(half, tweets.size())) {
+            String fast = engine.getDictionary().lemmatize(tweet);
+            if (fast == null) continue;
+            answered++;
+            if (!fast.equals(engine.annotateAndLearn(tweet))) differing++;
+        }
+        int evaluated = tweets.size() - half;
+        System.out.println("Dictionary words: " + engine.getDictionary().size());
+        System.out.printf("Fast path answered %d of %d tweets (%.1f%%)%n",
+                answered, evaluated, 100.0 * answered / Math.max(1, evaluated));
+        System.out.printf("Answers different from CoreNLP: %d (%.2f%% of answered)%n",
+                differing, 100.0 * differing / Math.max(1, answered));
+    }
+}
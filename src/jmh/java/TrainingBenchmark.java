@@ -0,0 +1,176 @@
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.util.ObjectStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Compares training settings on the same data. The csv file is preprocessed
+// once, then a model is trained with every setting, timed with its peak heap
+// use, and tested on the test set to get its accuracy. The results are
+// printed and written as JSON. The train and test text files go to
+// DATA_DIRECTORY, not to src/main. A setting whose training fails is
+// reported as failed, without an accuracy.
+// Settings are given as TrainingConfig.parse strings separated by ';'. By
+// default maxent runs on one thread and on every core, followed by perceptron
+// and naive Bayes.
+//
+// Built with the benchmarks, see pom.xml, and run from benchmarks.jar:
+//   java -cp target/benchmarks.jar TrainingBenchmark numTweets [settings] [result file] [--streaming]
+//        [--fast-lemmas] [--dedup] [--near-dedup] [--spill-samples]
+// eg. TrainingBenchmark 20000 "algorithm=maxent,threads=1;algorithm=maxent,threads=4;algorithm=perceptron"
+//     TrainingBenchmark 100000 "indexer=onepass;indexer=twopass" --spill-samples
+public class TrainingBenchmark {
+
+    public static final String SOURCE_PATH = "src/main/bitcointweets.csv";
+    public static final String DATA_DIRECTORY = "target/training-benchmark";
+
+    // Measurements of one setting
+    static final class SettingResult {
+        final TrainingConfig config;
+        final PipelineBenchmark.StageResult train;
+        final boolean failed; // No model was trained
+        final double accuracy;
+
+        SettingResult(TrainingConfig config, PipelineBenchmark.StageResult train, boolean failed, double accuracy) {
+            this.config = config;
+            this.train = train;
+            this.failed = failed;
+            this.accuracy = accuracy;
+        }
+    }
+
+    // Returns the default settings: single and multi-threaded maxent,
+    // perceptron and naive Bayes
+    static List<TrainingConfig> defaultSettings() {
+        List<TrainingConfig> settings = new ArrayList<>();
+        settings.add(new TrainingConfig().setThreads(1));
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors > 1)
+            settings.add(new TrainingConfig().setThreads(processors));
+        settings.add(new TrainingConfig().setAlgorithm(TrainingConfig.Algorithm.PERCEPTRON));
+        settings.add(new TrainingConfig().setAlgorithm(TrainingConfig.Algorithm.NAIVE_BAYES));
+        return settings;
+    }
+
+    // Trains a model on the samples with the given setting, tests it and
+    // returns the training measurements and the accuracy. The samples are
+    // reset first, so the same stream can be used for every setting.
+    // trainModel only prints training errors and keeps the previous model, so
+    // the setting failed if the model did not change. It is then not tested.
+    static SettingResult runSetting(ObjectStream<DocumentSample> samples, long trainRows, TrainingConfig config)
+            throws IOException {
+        samples.reset();
+        SentimentAnalysis.trainingConfig = config;
+        DoccatModel previous = SentimentAnalysis.getModel();
+        PipelineBenchmark.StageResult train = PipelineBenchmark.measure("train", trainRows,
+                () -> SentimentAnalysis.trainModel(samples));
+        DoccatModel model = SentimentAnalysis.getModel();
+        if (model == null || model == previous)
+            return new SettingResult(config, train, true, Double.NaN);
+
+        SentimentAnalysis.testModel();
+        int[][] matrix = SentimentAnalysis.createResult();
+        int total = 0;
+        int correct = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                total += matrix[i][j];
+                if (i == j) correct += matrix[i][j];
+            }
+        }
+        return new SettingResult(config, train, false, total == 0 ? 0 : (double) correct / total);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int numTweets = Integer.parseInt(args[0]);
+        List<TrainingConfig> settings = defaultSettings();
+        String resultPath = "target/training-benchmark.json";
+        int positional = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--streaming"))
+                Preprocessing.streamingIngestion = true;
+            else if (args[i].equals("--fast-lemmas"))
+                LemmatizationEngine.setFastPath(true);
+            else if (args[i].equals("--dedup"))
+                Preprocessing.dropDuplicates = true;
+            else if (args[i].equals("--near-dedup"))
+                Preprocessing.dropNearDuplicates = true;
+            else if (args[i].equals("--spill-samples"))
+                Preprocessing.spillTrainSamples = true;
+            else if (args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            else if (positional++ == 0) {
+                settings = new ArrayList<>();
+                for (String setting : args[i].split(";")) settings.add(TrainingConfig.parse(setting));
+            } else
+                resultPath = args[i];
+        }
+
+        new File(DATA_DIRECTORY).mkdirs();
+        Preprocessing.dataDirectory = DATA_DIRECTORY;
+        MetricsRegistry.Counter trainRowCounter = MetricsRegistry.getInstance().counter("preprocess.trainRows");
+        ObjectStream<DocumentSample> samples = Preprocessing.Preprocess(SOURCE_PATH, numTweets);
+        long trainRows = trainRowCounter.getCount();
+
+        List<SettingResult> results = new ArrayList<>();
+        for (TrainingConfig config : settings) {
+            SettingResult result = runSetting(samples, trainRows, config);
+            results.add(result);
+            if (result.failed)
+                System.out.println(config + ": training failed");
+            else
+                System.out.printf(Locale.ROOT, "%s: %.2f s, peak heap %d MiB, accuracy %.4f%n",
+                        config, result.train.seconds, result.train.peakHeapBytes >> 20, result.accuracy);
+        }
+        samples.close();
+
+        String json = toJson(numTweets, trainRows, results);
+        try (LineWriter out = new LineWriter(resultPath, StandardCharsets.UTF_8, LineWriter.DEFAULT_BUFFER_SIZE)) {
+            out.write(json);
+        }
+        System.out.print(json);
+        System.out.println("Results written to " + resultPath);
+    }
+
+    // Formats the results, together with the JVM and the preprocessing
+    // configuration they were measured with, as a JSON document
+    static String toJson(int numTweets, long trainRows, List<SettingResult> results) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": ").append(PipelineBenchmark.jsonString(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+        json.append("  \"configuration\": ").append(PipelineBenchmark.jsonString(Preprocessing.configuration())).append(",\n");
+        json.append("  \"tweets\": ").append(numTweets).append(",\n");
+        json.append("  \"trainRows\": ").append(trainRows).append(",\n");
+        json.append("  \"settings\": [");
+        for (int s = 0; s < results.size(); s++) {
+            SettingResult result = results.get(s);
+            TrainingConfig config = result.config;
+            json.append(s == 0 ? "\n" : ",\n");
+            json.append("    {\"algorithm\": ").append(PipelineBenchmark.jsonString(config.getAlgorithm().toString()))
+                    .append(", \"iterations\": ").append(config.getIterations())
+                    .append(", \"cutoff\": ").append(config.getCutoff());
+            // Only the maxent trainer uses the thread count
+            if (config.getAlgorithm() == TrainingConfig.Algorithm.MAXENT)
+                json.append(", \"threads\": ").append(config.getThreads());
+            json.append(", \"indexer\": ").append(PipelineBenchmark.jsonString(config.getIndexer().toString()));
+            if (result.failed) {
+                json.append(", \"failed\": true}");
+                continue;
+            }
+            json.append(", \"trainSeconds\": ").append(String.format(Locale.ROOT, "%.3f", result.train.seconds))
+                    .append(", \"rowsPerSecond\": ")
+                    .append(String.format(Locale.ROOT, "%.1f", result.train.tweetsPerSecond()))
+                    .append(", \"peakHeapBytes\": ").append(result.train.peakHeapBytes)
+                    .append(", \"accuracy\": ").append(String.format(Locale.ROOT, "%.4f", result.accuracy)).append("}");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+}
@@ -0,0 +1,321 @@
+package benchmarks;
+
+import opennlp.tools.doccat.DoccatModel;
+import tech.tablesaw.api.Table;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// Entry points into the application classes. These live in the default
+// package, which code in a named package cannot import, and JMH refuses
+// benchmarks in the default package. So the benchmarks call the application
+// through method handles, resolved once into static final fields, which the
+// JIT inlines like direct calls.
+// Source:
+// https://docs.oracle.com/en/java/javase/17/docs/api/java.base/java/lang/invoke/MethodHandles.html#privateLookupIn(java.lang.Class,java.lang.invoke.MethodHandles.Lookup)
+final class App {
+
+    private static final MethodHandle READ_CSV = staticMethod("Preprocessing", "readCSV",
+            Table.class, String.class, String[].class);
+    private static final MethodHandle PREPROCESS_STRING = staticMethod("Preprocessing", "preprocessString",
+            String.class, String.class);
+    private static final MethodHandle PREPROCESS_COLUMN = staticMethod("Preprocessing", "preprocessColumn",
+            void.class, Table.class, String.class);
+    private static final MethodHandle NORMALIZE_WITH_LAMBDAS = staticMethod("TextNormalizer", "normalizeWithLambdas",
+            String.class, String.class);
+
+    // The cleaning lambdas of Preprocessing, bound to the instances they hold
+    private static final MethodHandle REMOVE_WHITESPACE = lambda("lambdaWhitespace", "WhitespaceRemover", "removeWhitespace");
+    private static final MethodHandle REMOVE_EMOJI = lambda("lambdaEmoji", "EmojiRemover", "removeEmoji");
+    private static final MethodHandle REMOVE_MENTIONS = lambda("lambdaMentions", "MentionRemover", "removeMentions");
+    private static final MethodHandle REMOVE_LINKS = lambda("lambdaLinks", "LinkRemover", "removeLinks");
+    private static final MethodHandle REMOVE_SPECIAL = lambda("lambdaSpecial", "SpecialRemover", "removeSpecialChar");
+
+    private static final MethodHandle LEMMATIZE_STRING = staticMethod("Preprocessing", "lemmatizeString",
+            String.class, String.class);
+    private static final MethodHandle LEMMATIZE_COLUMN = staticMethod("Preprocessing", "lemmatizeColumn",
+            void.class, Table.class, String.class, int.class);
+    private static final MethodHandle NEW_CLASSIFIER = constructor("SentimentClassifier", DoccatModel.class);
+    private static final MethodHandle CLASSIFY = virtualMethod("SentimentClassifier", "classify",
+            String.class, String.class);
+    private static final MethodHandle COMPILE = staticMethod("CompiledDoccatModel", "compile",
+            type("CompiledDoccatModel"), DoccatModel.class, boolean.class);
+    private static final MethodHandle COMPILED_CATEGORIZE = virtualMethod("CompiledDoccatModel", "categorize",
+            int.class, CharSequence.class, double[].class);
+    private static final MethodHandle COMPILED_OUTCOME = virtualMethod("CompiledDoccatModel", "getOutcome",
+            String.class, int.class);
+    private static final MethodHandle COMPILED_SCORE_LENGTH = virtualMethod("CompiledDoccatModel", "getScoreLength",
+            int.class);
+
+    // Handles bound to the shared LemmatizationEngine. Kept in a holder so
+    // the CoreNLP models are only loaded by benchmarks that lemmatize.
+    private static final class Engine {
+        private static final Object INSTANCE = instance();
+        private static final MethodHandle ANNOTATE = virtualMethod("LemmatizationEngine", "annotateAndLearn",
+                String.class, String.class).bindTo(INSTANCE);
+        private static final MethodHandle CLEAR_CACHE = clearCache();
+
+        private static Object instance() {
+            try {
+                return (Object) staticMethod("LemmatizationEngine", "getInstance",
+                        type("LemmatizationEngine")).invokeExact();
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        private static MethodHandle clearCache() {
+            try {
+                Object cache = (Object) virtualMethod("LemmatizationEngine", "getCache", type("LemmaCache"))
+                        .invokeExact(INSTANCE);
+                return virtualMethod("LemmaCache", "clear", void.class).bindTo(cache);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private App() {
+    }
+
+    static Table readCSV(String filePath, String... columnNames) {
+        try {
+            return (Table) READ_CSV.invokeExact(filePath, columnNames);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String preprocessString(String text) {
+        try {
+            return (String) PREPROCESS_STRING.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static void preprocessColumn(Table dataFrame, String columnName) {
+        try {
+            PREPROCESS_COLUMN.invokeExact(dataFrame, columnName);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // The original regex based cleaning, lambda by lambda
+    static String normalizeWithLambdas(String text) {
+        try {
+            return (String) NORMALIZE_WITH_LAMBDAS.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String lemmatizeString(String text) {
+        try {
+            return (String) LEMMATIZE_STRING.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static void lemmatizeColumn(Table dataFrame, String columnName, int numThreads) {
+        try {
+            LEMMATIZE_COLUMN.invokeExact(dataFrame, columnName, numThreads);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // Full CoreNLP pass of the shared engine, bypassing the lemma cache
+    static String annotate(String text) {
+        try {
+            return (String) Engine.ANNOTATE.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // Empties the lemma cache of the shared engine
+    static void clearLemmaCache() {
+        try {
+            Engine.CLEAR_CACHE.invokeExact();
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // Returns a SentimentClassifier around model
+    static Object newClassifier(DoccatModel model) {
+        try {
+            return NEW_CLASSIFIER.invokeExact(model);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // SentimentClassifier.classify, from raw tweet to sentiment
+    static String classify(Object classifier, String text) {
+        try {
+            return (String) CLASSIFY.invokeExact(classifier, text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // Compiles model into a CompiledDoccatModel, scored with the Vector API
+    // if vectorized is set and the module is available
+    static Object compile(DoccatModel model, boolean vectorized) {
+        try {
+            return COMPILE.invokeExact(model, vectorized);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // CompiledDoccatModel.categorize, returns the index of the best outcome
+    static int compiledCategorize(Object compiled, CharSequence lemmas, double[] scores) {
+        try {
+            return (int) COMPILED_CATEGORIZE.invokeExact(compiled, lemmas, scores);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String compiledOutcome(Object compiled, int index) {
+        try {
+            return (String) COMPILED_OUTCOME.invokeExact(compiled, index);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static int compiledScoreLength(Object compiled) {
+        try {
+            return (int) COMPILED_SCORE_LENGTH.invokeExact(compiled);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String removeWhitespace(String text) {
+        try {
+            return (String) REMOVE_WHITESPACE.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String removeEmoji(String text) {
+        try {
+            return (String) REMOVE_EMOJI.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String removeMentions(String text) {
+        try {
+            return (String) REMOVE_MENTIONS.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String removeLinks(String text) {
+        try {
+            return (String) REMOVE_LINKS.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    static String removeSpecial(String text) {
+        try {
+            return (String) REMOVE_SPECIAL.invokeExact(text);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    // Lookup with access to the default package, including its package
+    // private interfaces and methods
+    private static MethodHandles.Lookup lookupIn(Class<?> target) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+    }
+
+    // Resolves a default package class by name
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException exception) {
+            throw new IllegalStateException("Cannot find class " + className, exception);
+        }
+    }
+
+    // Default package types cannot be named here, so the handles take and
+    // return Object in their place
+    private static MethodHandle erased(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (type.parameterType(i).getPackageName().isEmpty() && !type.parameterType(i).isPrimitive())
+                type = type.changeParameterType(i, Object.class);
+        }
+        if (type.returnType().getPackageName().isEmpty() && !type.returnType().isPrimitive())
+            type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static MethodHandle staticMethod(String className, String methodName, Class<?> returnType,
+                                             Class<?>... parameterTypes) {
+        try {
+            Class<?> target = type(className);
+            return erased(lookupIn(target).findStatic(target, methodName,
+                    MethodType.methodType(returnType, parameterTypes)));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Cannot resolve " + className + "." + methodName, exception);
+        }
+    }
+
+    private static MethodHandle virtualMethod(String className, String methodName, Class<?> returnType,
+                                              Class<?>... parameterTypes) {
+        try {
+            Class<?> target = type(className);
+            return erased(lookupIn(target).findVirtual(target, methodName,
+                    MethodType.methodType(returnType, parameterTypes)));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Cannot resolve " + className + "." + methodName, exception);
+        }
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            Class<?> target = type(className);
+            return erased(lookupIn(target).findConstructor(target, MethodType.methodType(void.class, parameterTypes)));
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Cannot resolve new " + className, exception);
+        }
+    }
+
+    // Reads a lambda field of Preprocessing and returns a (String)String
+    // handle to its functional method
+    private static MethodHandle lambda(String fieldName, String interfaceName, String methodName) {
+        try {
+            Class<?> preprocessing = Class.forName("Preprocessing");
+            Class<?> functionalInterface = Class.forName(interfaceName);
+            MethodHandles.Lookup lookup = lookupIn(preprocessing);
+            Object instance = lookup.findStaticGetter(preprocessing, fieldName, functionalInterface).invoke();
+            return lookup.findVirtual(functionalInterface, methodName, MethodType.methodType(String.class, String.class))
+                    .bindTo(instance);
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Cannot resolve Preprocessing." + fieldName, throwable);
+        }
+    }
+
+    static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException) return (RuntimeException) throwable;
+        if (throwable instanceof Error) throw (Error) throwable;
+        return new IllegalStateException(throwable);
+    }
+}
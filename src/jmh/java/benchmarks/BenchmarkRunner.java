@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+// Entry point of benchmarks.jar. Takes the usual JMH command line, eg.
+//   java -jar target/benchmarks.jar PreprocessingBenchmark -f 2
+// and adds the gc profiler when no profiler is given, so every run reports
+// the allocation rate next to the score.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException exception) {
+            System.err.println("Error parsing command line: " + exception.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // Help and listing requests are handled by the stock launcher
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) builder.addProfiler(GCProfiler.class);
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,177 @@
+package benchmarks;
+
+import opennlp.tools.doccat.DoccatFactory;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.doccat.DocumentSampleStream;
+import opennlp.tools.util.MarkableFileInputStreamFactory;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+import opennlp.tools.util.TrainingParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Latency of sentiment classification per tweet, as a distribution
+// (SampleTime mode reports p50, p90, p99, ...). The model is trained once
+// per fork from trainset.txt, like SentimentAnalysis.trainModel, and the
+// tweets are categorized the way testModel does: lemmatized, split on
+// spaces and passed to DocumentCategorizerME.categorize, or scored by the
+// CompiledDoccatModel of the same model, which gives the same sentiments
+// without allocating, with scalar code or with the Vector API. The Vector API
+// benchmarks fork with --add-modules jdk.incubator.vector and need the
+// benchmarks built with the vector profile, mvn -P benchmarks,vector package,
+// otherwise they measure the scalar code. The training file
+// can be changed with -Dbenchmark.trainset=<path>, passed to the forked JVMs
+// with -jvmArgsAppend.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClassificationBenchmark {
+
+    static final String TRAINSET_PATH = System.getProperty("benchmark.trainset", "src/main/trainset.txt");
+
+    // Tweets categorized per invocation of the batch benchmark
+    static final int BATCH_SIZE = 256;
+
+    // The trained model, shared by all benchmark threads
+    @State(Scope.Benchmark)
+    public static class ModelState {
+
+        DoccatModel model;
+
+        @Setup(Level.Trial)
+        public void train() throws IOException {
+            MarkableFileInputStreamFactory inputFactory = new MarkableFileInputStreamFactory(new File(TRAINSET_PATH));
+            try (ObjectStream<DocumentSample> sampleStream =
+                         new DocumentSampleStream(new PlainTextByLineStream(inputFactory, "UTF-8"))) {
+                model = DocumentCategorizerME.train("en", sampleStream, TrainingParameters.defaultParams(),
+                        new DoccatFactory());
+            }
+        }
+    }
+
+    // Per thread categorizer and inputs, DocumentCategorizerME is not thread
+    // safe
+    @State(Scope.Thread)
+    public static class TweetState {
+
+        @Param("1024")
+        public int sampleSize;
+
+        DocumentCategorizerME categorizer;
+        Object compiled;
+        double[] scores;
+        Object vectorized; // Scalar too if the fork lacks the Vector API module
+        double[] vectorScores;
+        Object classifier;
+        String[] raw;
+        String[] lemmas;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ModelState modelState) {
+            categorizer = new DocumentCategorizerME(modelState.model);
+            compiled = App.compile(modelState.model, false);
+            scores = new double[App.compiledScoreLength(compiled)];
+            vectorized = App.compile(modelState.model, true);
+            vectorScores = new double[App.compiledScoreLength(vectorized)];
+            classifier = App.newClassifier(modelState.model);
+            raw = TweetSamples.draw(sampleSize);
+            lemmas = new String[sampleSize];
+            for (int i = 0; i < sampleSize; i++) {
+                lemmas[i] = App.lemmatizeString(App.preprocessString(raw[i]));
+            }
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = index + 1 == sampleSize ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    // Single lemmatized tweet through DocumentCategorizerME.categorize
+    @Benchmark
+    public String categorize(TweetState state) {
+        double[] outcomes = state.categorizer.categorize(state.lemmas[state.nextIndex()].split(" "));
+        return state.categorizer.getBestCategory(outcomes);
+    }
+
+    // Batch of lemmatized tweets through DocumentCategorizerME.categorize,
+    // reported per tweet
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void categorizeBatch(TweetState state, Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            double[] outcomes = state.categorizer.categorize(state.lemmas[state.nextIndex()].split(" "));
+            blackhole.consume(state.categorizer.getBestCategory(outcomes));
+        }
+    }
+
+    // Single lemmatized tweet through CompiledDoccatModel.categorize
+    @Benchmark
+    public String categorizeCompiled(TweetState state) {
+        int best = App.compiledCategorize(state.compiled, state.lemmas[state.nextIndex()], state.scores);
+        return App.compiledOutcome(state.compiled, best);
+    }
+
+    // Batch of lemmatized tweets through CompiledDoccatModel.categorize,
+    // reported per tweet
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void categorizeCompiledBatch(TweetState state, Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int best = App.compiledCategorize(state.compiled, state.lemmas[state.nextIndex()], state.scores);
+            blackhole.consume(App.compiledOutcome(state.compiled, best));
+        }
+    }
+
+    // Single lemmatized tweet through CompiledDoccatModel.categorize with the
+    // Vector API kernel
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+    public String categorizeVector(TweetState state) {
+        int best = App.compiledCategorize(state.vectorized, state.lemmas[state.nextIndex()], state.vectorScores);
+        return App.compiledOutcome(state.vectorized, best);
+    }
+
+    // Batch of lemmatized tweets through CompiledDoccatModel.categorize with
+    // the Vector API kernel, reported per tweet
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void categorizeVectorBatch(TweetState state, Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int best = App.compiledCategorize(state.vectorized, state.lemmas[state.nextIndex()], state.vectorScores);
+            blackhole.consume(App.compiledOutcome(state.vectorized, best));
+        }
+    }
+
+    // Single raw tweet through SentimentClassifier.classify, ie. cleaning,
+    // lemmatization and categorization as in the interactive mode. The
+    // sampled tweets are in the lemma cache after setup, so this is the
+    // latency of a repeated tweet.
+    @Benchmark
+    public String classify(TweetState state) {
+        return App.classify(state.classifier, state.raw[state.nextIndex()]);
+    }
+}
@@ -0,0 +1,113 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.concurrent.TimeUnit;
+
+// Latency of lemmatization per tweet, as a distribution (SampleTime mode
+// reports p50, p90, p99, ...). Inputs are sampled tweets cleaned with
+// preprocessString, as they reach the lemmatizer in Preprocess and
+// classify. With the gc profiler, gc.alloc.rate.norm is the number of bytes
+// allocated per tweet.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LemmatizationBenchmark {
+
+    // Rows of the data frame lemmatized by lemmatizeColumn
+    static final int BATCH_ROWS = 64;
+
+    @Param("1024")
+    public int sampleSize;
+
+    private String[] cleaned;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cleaned = TweetSamples.draw(sampleSize);
+        for (int i = 0; i < sampleSize; i++) {
+            cleaned[i] = App.preprocessString(cleaned[i]);
+            App.lemmatizeString(cleaned[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == sampleSize ? 0 : index + 1;
+        return index;
+    }
+
+    // Single tweet through Preprocessing.lemmatizeString. Every sampled tweet
+    // is put in the lemma cache during setup, so this is the latency of a
+    // repeated tweet.
+    @Benchmark
+    public String lemmatizeString() {
+        return App.lemmatizeString(cleaned[nextIndex()]);
+    }
+
+    // Single tweet through the CoreNLP pipeline, bypassing the lemma cache,
+    // ie. the latency of a tweet never seen before
+    @Benchmark
+    public String annotate() {
+        return App.annotate(cleaned[nextIndex()]);
+    }
+
+    // lemmatizeColumn replaces the column it lemmatizes, so every invocation
+    // works on a fresh data frame, with an empty lemma cache. Repeats within
+    // the batch are still answered from the cache, as in Preprocess.
+    @State(Scope.Thread)
+    public static class ColumnState {
+
+        // Pool size of lemmatizeColumn, eg. -p threads=1,4
+        @Param("1")
+        public int threads;
+
+        private Table template;
+        Table dataFrame;
+
+        @Setup(Level.Trial)
+        public void load() {
+            String[] tweets = TweetSamples.draw(BATCH_ROWS);
+            for (int i = 0; i < tweets.length; i++) {
+                tweets[i] = App.preprocessString(tweets[i]);
+            }
+            template = Table.create("tweets", StringColumn.create("Tweet", tweets));
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            dataFrame = template.copy();
+            App.clearLemmaCache();
+        }
+    }
+
+    // Batch of tweets through Preprocessing.lemmatizeColumn, reported per
+    // tweet. The lemmas are computed on the pool threads of lemmatizeColumn,
+    // whose allocations the gc profiler does not attribute to the benchmark
+    // thread, so compare gc.alloc.rate.norm of annotate instead.
+    @Benchmark
+    @OperationsPerInvocation(BATCH_ROWS)
+    public void lemmatizeColumn(ColumnState state, Blackhole blackhole) {
+        App.lemmatizeColumn(state.dataFrame, "Tweet", state.threads);
+        blackhole.consume(state.dataFrame);
+    }
+}
@@ -0,0 +1,132 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.tablesaw.api.Table;
+
+import java.util.concurrent.TimeUnit;
+
+// Throughput of the text cleaning hot paths, in tweets per second. Each
+// cleaning lambda is measured on the text it sees in the original chain, ie.
+// the output of the lambdas before it. Run with the gc profiler (on by
+// default through BenchmarkRunner) to also get the allocation rate, where
+// gc.alloc.rate.norm is the number of bytes allocated per tweet.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PreprocessingBenchmark {
+
+    // Rows of the data frame cleaned by preprocessColumn
+    static final int COLUMN_ROWS = 1024;
+
+    // Number of distinct tweets cycled through, large enough that branch
+    // predictors do not learn a single input
+    @Param("1024")
+    public int sampleSize;
+
+    private String[] raw;
+    private String[] afterWhitespace;
+    private String[] afterEmoji;
+    private String[] afterMentions;
+    private String[] afterLinks;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raw = TweetSamples.draw(sampleSize);
+        afterWhitespace = new String[sampleSize];
+        afterEmoji = new String[sampleSize];
+        afterMentions = new String[sampleSize];
+        afterLinks = new String[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            afterWhitespace[i] = App.removeWhitespace(raw[i]);
+            afterEmoji[i] = App.removeEmoji(afterWhitespace[i]);
+            afterMentions[i] = App.removeMentions(afterEmoji[i]);
+            afterLinks[i] = App.removeLinks(afterMentions[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == sampleSize ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public String preprocessString() {
+        return App.preprocessString(raw[nextIndex()]);
+    }
+
+    // The regex lambda chain preprocessString replaced, as a baseline
+    @Benchmark
+    public String lambdaChain() {
+        return App.normalizeWithLambdas(raw[nextIndex()]);
+    }
+
+    @Benchmark
+    public String lambdaWhitespace() {
+        return App.removeWhitespace(raw[nextIndex()]);
+    }
+
+    @Benchmark
+    public String lambdaEmoji() {
+        return App.removeEmoji(afterWhitespace[nextIndex()]);
+    }
+
+    @Benchmark
+    public String lambdaMentions() {
+        return App.removeMentions(afterEmoji[nextIndex()]);
+    }
+
+    @Benchmark
+    public String lambdaLinks() {
+        return App.removeLinks(afterMentions[nextIndex()]);
+    }
+
+    @Benchmark
+    public String lambdaSpecial() {
+        return App.removeSpecial(afterLinks[nextIndex()]);
+    }
+
+    // preprocessColumn replaces the column it cleans, so every invocation
+    // works on a fresh data frame
+    @State(Scope.Thread)
+    public static class ColumnState {
+
+        private Table template;
+        Table dataFrame;
+
+        @Setup(Level.Trial)
+        public void load() {
+            template = TweetSamples.drawTable(COLUMN_ROWS);
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() {
+            dataFrame = template.copy();
+        }
+    }
+
+    // Reported per tweet, like the String benchmarks
+    @Benchmark
+    @OperationsPerInvocation(COLUMN_ROWS)
+    public void preprocessColumn(ColumnState state, Blackhole blackhole) {
+        App.preprocessColumn(state.dataFrame, "Tweet");
+        blackhole.consume(state.dataFrame);
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Realistic benchmark inputs: raw tweets drawn at random from
+// bitcointweets.csv. The file is read once per JVM. Its location can be
+// changed with -Dbenchmark.csv=<path>, which must be passed to the forked
+// benchmark JVMs too, eg. with -jvmArgsAppend.
+final class TweetSamples {
+
+    static final String CSV_PATH = System.getProperty("benchmark.csv", "src/main/bitcointweets.csv");
+
+    // Seed of the sampling, so every run measures the same tweets
+    static final long SEED = 2018;
+
+    private static final class Holder {
+        private static final List<String> TWEETS = load();
+    }
+
+    private TweetSamples() {
+    }
+
+    // Returns size raw tweets drawn with replacement
+    static String[] draw(int size) {
+        List<String> tweets = Holder.TWEETS;
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] sample = new String[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = tweets.get(random.nextInt(tweets.size()));
+        }
+        return sample;
+    }
+
+    // Returns a data frame with a single Tweet column of size raw tweets
+    static Table drawTable(int size) {
+        return Table.create("tweets", StringColumn.create("Tweet", draw(size)));
+    }
+
+    private static List<String> load() {
+        StringColumn column = App.readCSV(CSV_PATH, "Tweet").column("Tweet").asStringColumn();
+        List<String> tweets = new ArrayList<>(column.size());
+        for (int i = 0; i < column.size(); i++) {
+            if (!column.isMissing(i)) tweets.add(column.get(i));
+        }
+        if (tweets.isEmpty())
+            throw new IllegalStateException("No tweets in " + CSV_PATH);
+        return tweets;
+    }
+}
@@ -0,0 +1,141 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// JMX view of a running classifier, eg. during the individualSentiment loop.
+// Reads the classify and classify.categorize timers of the MetricsRegistry
+// and the lemma cache statistics. The classification rate is an exponentially
+// weighted moving average of the rate in 5 second ticks, with a one minute
+// time constant, like the load average of Unix.
+// Source:
+// https://docs.oracle.com/javase/tutorial/jmx/mbeans/standard.html
+public class ClassifierMonitor implements ClassifierMonitorMBean {
+
+    // Name the monitor is registered under on the platform MBean server
+    public static final String OBJECT_NAME = "BitcoinSentimentAnalysis:type=Classifier";
+
+    private static final int TICK_SECONDS = 5;
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+    private final String modelVersion;
+    private final MetricsRegistry.Timer classifyTimer;
+    private final MetricsRegistry.Timer categorizeTimer;
+    private final LemmaCache cache;
+    private final long startNanos = System.nanoTime();
+    private final long startCount;
+    private final ScheduledExecutorService ticker;
+    private long lastCount;
+    private volatile double rate = Double.NaN;
+
+    public ClassifierMonitor(String modelVersion) {
+        this.modelVersion = modelVersion;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        classifyTimer = metrics.timer("classify");
+        categorizeTimer = metrics.timer("classify.categorize");
+        cache = LemmatizationEngine.getInstance().getCache();
+        startCount = categorizeTimer.getHistogram().getCount();
+        lastCount = startCount;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "classifier-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Registers the monitor as OBJECT_NAME on the platform MBean server,
+    // replacing an earlier monitor.
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        } catch (JMException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    // Stops the rate updates and unregisters the monitor
+    public void close() {
+        ticker.shutdownNow();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    private void tick() {
+        long count = categorizeTimer.getHistogram().getCount();
+        double instantRate = (double) (count - lastCount) / TICK_SECONDS;
+        lastCount = count;
+        rate = Double.isNaN(rate) ? instantRate : rate + ALPHA * (instantRate - rate);
+    }
+
+    @Override
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public long getClassificationCount() {
+        return categorizeTimer.getHistogram().getCount();
+    }
+
+    @Override
+    public double getClassificationsPerSecond() {
+        double current = rate;
+        return Double.isNaN(current) ? getMeanClassificationsPerSecond() : current;
+    }
+
+    @Override
+    public double getMeanClassificationsPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds == 0 ? 0 : (getClassificationCount() - startCount) / seconds;
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return classifyTimer.getHistogram().getPercentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return classifyTimer.getHistogram().getPercentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return classifyTimer.getHistogram().getMax() / 1e6;
+    }
+
+    @Override
+    public double getCategorizeP50Millis() {
+        return categorizeTimer.getHistogram().getPercentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getCategorizeP99Millis() {
+        return categorizeTimer.getHistogram().getPercentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getLemmaCacheHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    @Override
+    public int getLemmaCacheSize() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,33 @@
+// Management interface of ClassifierMonitor. Every getter is a read-only JMX
+// attribute.
+public interface ClassifierMonitorMBean {
+
+    // Fingerprint of the model in use, see ModelStore
+    String getModelVersion();
+
+    // Tweets classified since start, including the test set
+    long getClassificationCount();
+
+    // Classifications per second, moving average over about a minute
+    double getClassificationsPerSecond();
+
+    // Classifications per second since the monitor was started
+    double getMeanClassificationsPerSecond();
+
+    // Latency of classifying a raw tweet, from cleaning to sentiment
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    // Latency of the categorizer alone, on a lemmatized tweet
+    double getCategorizeP50Millis();
+
+    double getCategorizeP99Millis();
+
+    // Fraction of lemmatizations answered from the lemma cache
+    double getLemmaCacheHitRatio();
+
+    int getLemmaCacheSize();
+}
@@ -0,0 +1,351 @@
+import opennlp.tools.doccat.BagOfWordsFeatureGenerator;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.FeatureGenerator;
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// A trained maxent or perceptron DoccatModel compiled into flat arrays for
+// fast categorization. DocumentCategorizerME builds a "bow=" + token String
+// for every token, looks each one up in a HashMap and allocates the outcome
+// array. Here every known token gets an id from an open addressing table
+// keyed by the token itself, and the weights of token id t are the
+// numOutcomes doubles starting at weights[t * stride]. Scoring a tweet adds
+// up the rows of its tokens in a caller supplied buffer, skipping unknown
+// tokens, and allocates nothing.
+// Scores are summed in the same order and normalized the same way as
+// GISModel and PerceptronModel do, so the probabilities, and thus the
+// predictions, are identical to DocumentCategorizerME.categorize followed by
+// getBestCategory. Immutable and thread-safe.
+// Compiled with vectorized set, rows are added and normalized with SIMD
+// instructions by a VectorScoreKernel, if it was built with the vector
+// profile, see pom.xml, and the JVM was started with
+// --add-modules jdk.incubator.vector, and by the scalar code otherwise.
+// Predictions stay identical, see VectorScoreKernel.
+// Sources:
+// https://opennlp.apache.org/docs/1.9.4/apidocs/opennlp-tools/opennlp/tools/ml/maxent/GISModel.html
+// https://openjdk.org/jeps/414
+public final class CompiledDoccatModel {
+
+    // Prefix BagOfWordsFeatureGenerator puts in front of every token
+    private static final String FEATURE_PREFIX = "bow=";
+
+    // Score gap below which exp and the normalization could round two
+    // outcomes to the same probability, many ulps wide to be safe
+    private static final double TIE_MARGIN = 1e-9;
+
+    private final boolean perceptron;
+    private final String[] outcomes;
+    private final int numOutcomes;
+    private final double uniformPrior;
+
+    // Token table: keys[slot] is a token, ids[slot] its id, -1 if free
+    private final String[] keys;
+    private final int[] ids;
+    private final int mask;
+
+    private final double[] weights;
+    private final int stride; // Doubles per weight row and score buffer
+    private final ScoreKernel kernel; // null for the scalar code
+
+    private CompiledDoccatModel(boolean perceptron, String[] outcomes, List<String> tokens, double[] weights,
+                                int stride, ScoreKernel kernel) {
+        this.perceptron = perceptron;
+        this.outcomes = outcomes;
+        this.numOutcomes = outcomes.length;
+        this.uniformPrior = Math.log(1.0 / numOutcomes);
+        this.weights = weights;
+        this.stride = stride;
+        this.kernel = kernel;
+
+        int capacity = Integer.highestOneBit(Math.max(16, tokens.size() * 2 - 1)) << 1;
+        keys = new String[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(ids, -1);
+        for (int id = 0; id < tokens.size(); id++) {
+            String token = tokens.get(id);
+            int slot = mix(token.hashCode()) & mask;
+            while (ids[slot] != -1) slot = (slot + 1) & mask;
+            keys[slot] = token;
+            ids[slot] = id;
+        }
+    }
+
+    // Compiles a model trained with the default DoccatFactory, ie. bag of
+    // words features, by the maxent or perceptron trainer. Throws
+    // IllegalArgumentException for other models, eg. naive Bayes ones, which
+    // DocumentCategorizerME has to score.
+    public static CompiledDoccatModel compile(DoccatModel model) {
+        return compile(model, false);
+    }
+
+    // Same as compile(model), with the Vector API kernel if vectorized is set
+    // and the jdk.incubator.vector module is available
+    public static CompiledDoccatModel compile(DoccatModel model, boolean vectorized) {
+        FeatureGenerator[] generators = model.getFactory().getFeatureGenerators();
+        if (generators.length != 1 || !(generators[0] instanceof BagOfWordsFeatureGenerator)
+                || !generators[0].extractFeatures(new String[]{"a1"}, Collections.emptyMap())
+                .equals(Collections.singletonList(FEATURE_PREFIX + "a1")))
+            throw new IllegalArgumentException("Only plain bag of words models can be compiled");
+
+        MaxentModel maxentModel = model.getMaxentModel();
+        if (!(maxentModel instanceof AbstractModel))
+            throw new IllegalArgumentException("Unsupported model " + maxentModel.getClass().getName());
+        AbstractModel.ModelType type = ((AbstractModel) maxentModel).getModelType();
+        if (type != AbstractModel.ModelType.Maxent && type != AbstractModel.ModelType.Perceptron)
+            throw new IllegalArgumentException("Unsupported model type " + type);
+
+        // Predicate map and outcome names, see getDataStructures
+        Object[] data = ((AbstractModel) maxentModel).getDataStructures();
+        @SuppressWarnings("unchecked")
+        Map<String, Context> predicates = (Map<String, Context>) data[1];
+        String[] outcomes = ((String[]) data[2]).clone();
+        int numOutcomes = outcomes.length;
+        ScoreKernel kernel = vectorized ? vectorKernel(numOutcomes) : null;
+        int stride = kernel != null ? kernel.getStride() : numOutcomes;
+
+        List<String> tokens = new ArrayList<>(predicates.size());
+        double[] weights = new double[predicates.size() * stride];
+        for (Map.Entry<String, Context> entry : predicates.entrySet()) {
+            if (!entry.getKey().startsWith(FEATURE_PREFIX)) continue;
+            int row = tokens.size() * stride;
+            tokens.add(entry.getKey().substring(FEATURE_PREFIX.length()));
+            int[] outcomeIds = entry.getValue().getOutcomes();
+            double[] parameters = entry.getValue().getParameters();
+            for (int i = 0; i < outcomeIds.length; i++) {
+                weights[row + outcomeIds[i]] = parameters[i];
+            }
+        }
+        return new CompiledDoccatModel(type == AbstractModel.ModelType.Perceptron, outcomes, tokens,
+                Arrays.copyOf(weights, tokens.size() * stride), stride, kernel);
+    }
+
+    // Loads the Vector API kernel by name, so this class does not depend on
+    // the incubator module. Returns null if the module or the kernel, which
+    // only the vector profile builds, is not there.
+    private static ScoreKernel vectorKernel(int numOutcomes) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+        try {
+            return (ScoreKernel) Class.forName("VectorScoreKernel").getDeclaredConstructor(int.class)
+                    .newInstance(numOutcomes);
+        } catch (ClassNotFoundException exception) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    public int getNumOutcomes() {
+        return numOutcomes;
+    }
+
+    // Length of the score buffers to pass to score and categorize, the
+    // number of outcomes rounded up to whole vectors with the Vector API
+    // kernel
+    public int getScoreLength() {
+        return stride;
+    }
+
+    // Whether rows are added by the Vector API kernel
+    public boolean isVectorized() {
+        return kernel != null;
+    }
+
+    // Number of tokens the model knows
+    public int getNumTokens() {
+        return weights.length / stride;
+    }
+
+    // Returns the name of outcome index, eg. positive
+    public String getOutcome(int index) {
+        return outcomes[index];
+    }
+
+    // Returns the id of token, -1 if the model does not know it
+    public int tokenId(String token) {
+        int slot = mix(token.hashCode()) & mask;
+        while (ids[slot] != -1) {
+            if (keys[slot].equals(token)) return ids[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Returns the id of text[start, end), -1 if the model does not know it.
+    // Hashes the range the way String.hashCode does, so no String is made.
+    public int tokenId(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + text.charAt(i);
+        return tokenId(text, start, end, hash);
+    }
+
+    // Same as tokenId(text, start, end), with the hash of the range already
+    // computed
+    private int tokenId(CharSequence text, int start, int end, int hash) {
+        int length = end - start;
+        int slot = mix(hash) & mask;
+        while (ids[slot] != -1) {
+            String key = keys[slot];
+            if (key.length() == length && matches(key, text, start)) return ids[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Fills probabilities, of length at least getScoreLength, with the
+    // probability of every outcome for the given tokens, like
+    // DocumentCategorizerME.categorize(tokens). Unknown tokens are skipped.
+    public void score(String[] tokens, double[] probabilities) {
+        start(probabilities);
+        for (String token : tokens) add(tokenId(token), probabilities);
+        normalize(probabilities);
+    }
+
+    // Same as score(lemmas.split(" "), probabilities), without splitting:
+    // tokens are the runs between single spaces, trailing spaces are
+    // ignored.
+    public void score(CharSequence lemmas, double[] probabilities) {
+        sum(lemmas, probabilities);
+        normalize(probabilities);
+    }
+
+    // Returns the index of the best outcome for lemmas, the first one on
+    // ties like getBestCategory, using scores as scratch space. The
+    // probabilities are only computed when the best scores are too close to
+    // tell apart without them, so scores usually ends up holding the
+    // unnormalized scores, in log space.
+    public int categorize(CharSequence lemmas, double[] scores) {
+        sum(lemmas, scores);
+        return bestOfSums(scores);
+    }
+
+    public int categorize(String[] tokens, double[] scores) {
+        start(scores);
+        for (String token : tokens) add(tokenId(token), scores);
+        return bestOfSums(scores);
+    }
+
+    // Returns the index of the largest of the first getNumOutcomes
+    // probabilities, the first one on ties
+    public int best(double[] probabilities) {
+        int best = 0;
+        for (int i = 1; i < numOutcomes; i++) {
+            if (probabilities[i] > probabilities[best]) best = i;
+        }
+        return best;
+    }
+
+    // Adds up the weights of the tokens of lemmas, split like
+    // lemmas.split(" "). Tokens are hashed while looking for the spaces, so
+    // every char is read once, and once more to compare with the key found.
+    private void sum(CharSequence lemmas, double[] scores) {
+        start(scores);
+        int end = lemmas.length();
+        while (end > 0 && lemmas.charAt(end - 1) == ' ') end--;
+        // Only spaces, split returns no tokens at all
+        if (end == 0 && lemmas.length() > 0) return;
+        int tokenStart = 0;
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            char c = lemmas.charAt(i);
+            if (c == ' ') {
+                add(tokenId(lemmas, tokenStart, i, hash), scores);
+                tokenStart = i + 1;
+                hash = 0;
+            } else {
+                hash = 31 * hash + c;
+            }
+        }
+        add(tokenId(lemmas, tokenStart, end, hash), scores);
+    }
+
+    // exp and the normalization keep the order of the scores, except that
+    // scores closer than a few ulps may become equal probabilities, where
+    // getBestCategory picks the first. Only then are the probabilities
+    // computed.
+    private int bestOfSums(double[] scores) {
+        int best = best(scores);
+        double margin = TIE_MARGIN;
+        if (perceptron) {
+            // PerceptronModel divides the scores by the largest magnitude
+            for (int i = 0; i < numOutcomes; i++) margin = Math.max(margin, TIE_MARGIN * Math.abs(scores[i]));
+        }
+        for (int i = 0; i < numOutcomes; i++) {
+            if (i != best && scores[best] - scores[i] <= margin) {
+                // Always the scalar code, which rounds like OpenNLP
+                normalizeScalar(scores, scale(scores));
+                return best(scores);
+            }
+        }
+        return best;
+    }
+
+    // Uniform prior for maxent, in log space, nothing for the perceptron.
+    // The padding of the buffer is set to negative infinity, which exp turns
+    // into 0.
+    private void start(double[] scores) {
+        double prior = perceptron ? 0 : uniformPrior;
+        for (int i = 0; i < numOutcomes; i++) scores[i] = prior;
+        for (int i = numOutcomes; i < stride; i++) scores[i] = Double.NEGATIVE_INFINITY;
+    }
+
+    private void add(int tokenId, double[] scores) {
+        if (tokenId < 0) return;
+        int row = tokenId * stride;
+        if (kernel != null) {
+            kernel.add(weights, row, scores);
+            return;
+        }
+        for (int i = 0; i < numOutcomes; i++) scores[i] += weights[row + i];
+    }
+
+    private void normalize(double[] scores) {
+        double scale = scale(scores);
+        if (kernel != null)
+            kernel.softmax(scores, scale);
+        else
+            normalizeScalar(scores, scale);
+    }
+
+    // PerceptronModel divides the scores by their largest magnitude, if it
+    // is above 1, GISModel does not
+    private double scale(double[] scores) {
+        double scale = 1;
+        if (perceptron) {
+            for (int i = 0; i < numOutcomes; i++) {
+                if (scale < Math.abs(scores[i])) scale = Math.abs(scores[i]);
+            }
+        }
+        return scale;
+    }
+
+    // Same arithmetic as GISModel.eval and PerceptronModel.eval
+    private void normalizeScalar(double[] scores, double scale) {
+        double sum = 0;
+        for (int i = 0; i < numOutcomes; i++) {
+            scores[i] = Math.exp(perceptron ? scores[i] / scale : scores[i]);
+            sum += scores[i];
+        }
+        for (int i = 0; i < numOutcomes; i++) scores[i] /= sum;
+    }
+
+    private static boolean matches(String key, CharSequence text, int start) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ hash >>> 16;
+    }
+}
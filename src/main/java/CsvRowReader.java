@@ -0,0 +1,196 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Streaming CSV parser that returns one record at a time, projected onto a
+// chosen set of columns. Memory use is bounded by the longest record, not by
+// the file size. Quoted fields may contain commas, doubled quotes and line
+// breaks, so multi-line tweets are read as a single record.
+// Source:
+// https://www.rfc-editor.org/rfc/rfc4180
+public class CsvRowReader implements Closeable {
+
+    // Values that tablesaw treats as missing when it reads a csv file
+    private static final String[] MISSING_VALUES = {"", "NaN", "*", "NA", "null", "N/A"};
+
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+
+    private final int[] projection; // Output slot of every csv column, or -1 if it is not wanted
+    private final int numColumns;
+    private final int numProjected;
+    private final StringBuilder field = new StringBuilder();
+    private boolean lastRowHasMissingValues;
+    private long rowNumber;
+
+    // Reads the header and prepares to return the given columns, in the given
+    // order, for every record. Throws IllegalArgumentException if a column is
+    // not in the header.
+    public CsvRowReader(Reader reader, String... columns) throws IOException {
+        this.reader = reader;
+        List<String> header = new ArrayList<>();
+        if (!readRecord(header))
+            throw new IOException("CSV file is empty");
+
+        numColumns = header.size();
+        projection = new int[numColumns];
+        Arrays.fill(projection, -1);
+        for (int i = 0; i < columns.length; i++) {
+            int index = header.indexOf(columns[i]);
+            if (index < 0)
+                throw new IllegalArgumentException("Column " + columns[i] + " does not exist in CSV file.");
+            projection[index] = i;
+        }
+        numProjected = columns.length;
+    }
+
+    // Returns the projected values of the next record, or null at the end of
+    // the file. Values are trimmed.
+    public String[] next() throws IOException {
+        String[] row = new String[numProjected];
+        lastRowHasMissingValues = false;
+        int column = 0;
+        int end = FIELD;
+        while (end == FIELD) {
+            end = readField();
+            if (column == 0 && field.length() == 0) {
+                if (end == EOF) return null;
+
+                // Skip blank lines between records
+                if (end == RECORD) {
+                    end = FIELD;
+                    continue;
+                }
+            }
+
+            // Only the projected columns are turned into Strings and checked
+            if (column < numColumns && projection[column] >= 0) {
+                String value = trimmedField();
+                row[projection[column]] = value;
+                if (isMissing(value)) lastRowHasMissingValues = true;
+            }
+            column++;
+        }
+        rowNumber++;
+        // A record too short to hold every projected column
+        for (String value : row) {
+            if (value == null) lastRowHasMissingValues = true;
+        }
+        return row;
+    }
+
+    // Whether the record returned by the last call to next had a missing value
+    // in a projected column, or ended before one. Other columns are not
+    // looked at, like Preprocessing.readCSV, which skips them, followed by
+    // dropRowsWithMissingValues.
+    public boolean lastRowHasMissingValues() {
+        return lastRowHasMissingValues;
+    }
+
+    // Number of records returned so far, not counting the header
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static final int FIELD = 0; // Field ended with a comma
+    private static final int RECORD = 1; // Field ended with a line break
+    private static final int EOF = 2; // Field ended with the end of the file
+
+    // Reads one field into the field buffer and returns what ended it
+    private int readField() throws IOException {
+        field.setLength(0);
+        boolean quoted = false;
+        int c = read();
+        while (c == ' ' || c == '\t') c = read();
+        if (c == '"') {
+            quoted = true;
+            c = read();
+        }
+        while (true) {
+            if (c == -1) {
+                return EOF;
+            } else if (quoted) {
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                return FIELD;
+            } else if (c == '\n') {
+                return RECORD;
+            } else if (c == '\r') {
+                if (peek() == '\n') read();
+                return RECORD;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private boolean readRecord(List<String> values) throws IOException {
+        int end;
+        do {
+            end = readField();
+            if (end == EOF && values.isEmpty() && field.length() == 0)
+                return false;
+            values.add(trimmedField());
+        } while (end == FIELD);
+        return true;
+    }
+
+    private String trimmedField() {
+        int start = 0;
+        int end = field.length();
+        while (start < end && field.charAt(start) <= ' ') start++;
+        while (end > start && field.charAt(end - 1) <= ' ') end--;
+        return field.substring(start, end);
+    }
+
+    private static boolean isMissing(CharSequence value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        for (String missing : MISSING_VALUES) {
+            if (missing.length() == end - start && missing.contentEquals(value.subSequence(start, end)))
+                return true;
+        }
+        return false;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
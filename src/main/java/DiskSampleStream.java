@@ -0,0 +1,98 @@
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.util.ObjectStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Training samples kept in a temporary file instead of on the heap. Samples
+// are appended with add, then the stream is read like any other sample
+// stream, as often as needed thanks to reset. Memory use is two buffers,
+// whatever the number of samples. Each sample is stored as its category and
+// its tokens in modified UTF-8, so no characters are lost, unlike a text file
+// in the default charset. Close deletes the file.
+// Source:
+// https://docs.oracle.com/javase/8/docs/api/java/io/DataOutputStream.html
+public class DiskSampleStream implements ObjectStream<DocumentSample> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private long size;
+    private long read;
+
+    // Creates an empty store in the temporary directory
+    public DiskSampleStream() throws IOException {
+        file = Files.createTempFile("samples", ".bin");
+        file.toFile().deleteOnExit();
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+    // Appends a sample. Throws IllegalStateException once reading started.
+    public void add(DocumentSample sample) throws IOException {
+        if (out == null)
+            throw new IllegalStateException("Samples cannot be added after reading started");
+        String[] tokens = sample.getText();
+        out.writeUTF(sample.getCategory());
+        out.writeInt(tokens.length);
+        for (String token : tokens) out.writeUTF(token);
+        size++;
+    }
+
+    // Number of samples added
+    public long size() {
+        return size;
+    }
+
+    // Returns the next sample, or null after the last one
+    @Override
+    public DocumentSample read() throws IOException {
+        if (in == null) open();
+        if (read == size) return null;
+        try {
+            String category = in.readUTF();
+            String[] tokens = new String[in.readInt()];
+            for (int i = 0; i < tokens.length; i++) tokens[i] = in.readUTF();
+            read++;
+            return new DocumentSample(category, tokens);
+        } catch (EOFException exception) {
+            throw new IOException("Sample file " + file + " is truncated", exception);
+        }
+    }
+
+    // Starts reading from the first sample again
+    @Override
+    public void reset() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    // Deletes the file
+    @Override
+    public void close() throws IOException {
+        if (out != null) out.close();
+        if (in != null) in.close();
+        out = null;
+        in = null;
+        Files.deleteIfExists(file);
+    }
+
+    // Finishes writing on the first read and opens the file for reading
+    private void open() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        read = 0;
+    }
+}
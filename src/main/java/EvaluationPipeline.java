@@ -0,0 +1,147 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parallel version of SentimentAnalysis.createArrays followed by testModel.
+// Test lines flow through three stages connected by bounded queues:
+//   1. one reader pairs each test line with its tag,
+//   2. numWorkers threads preprocess and lemmatize the lines,
+//   3. numWorkers threads classify the lemmatized lines.
+// Every line keeps its position in the test file, and the results are put
+// back in file order, so the confusion matrix is the same as a sequential
+// run.
+public class EvaluationPipeline {
+
+    // Bounded so a fast reader cannot pull the whole test set into memory
+    // ahead of the slow lemmatization stage
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Marks the end of the stream in a queue
+    private static final Line END = new Line(-1, null, null);
+
+    // A test line travelling through the pipeline
+    private static class Line {
+        final int index;
+        final String text;
+        final String tag;
+        String lemmas;
+        String prediction;
+
+        Line(int index, String text, String tag) {
+            this.index = index;
+            this.text = text;
+            this.tag = tag;
+        }
+    }
+
+    // The output of a run, in test file order
+    public static class Result {
+        public final ArrayList<String> tests = new ArrayList<>(); // Lemmatized test Tweets
+        public final ArrayList<String> tags = new ArrayList<>(); // Correct tags (sentiments)
+        public final ArrayList<String> predictions = new ArrayList<>(); // Predicted tags (sentiments)
+    }
+
+    // Reads, cleans, lemmatizes and classifies the test set in testPath with
+    // the tags in tagPath. Throws FileNotFoundException if either file does
+    // not exist.
+    public static Result run(String testPath, String tagPath, SentimentClassifier classifier, int numWorkers)
+            throws FileNotFoundException {
+        if (numWorkers < 1)
+            throw new IllegalArgumentException("Number of workers must be positive");
+
+        Scanner testScan = new Scanner(new File(testPath));
+        Scanner tagScan = new Scanner(new File(tagPath));
+        BlockingQueue<Line> readQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Line> lemmaQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ConcurrentLinkedQueue<Line> done = new ConcurrentLinkedQueue<>();
+
+        // Every stage is waited on through one completion service, so the
+        // first failure is seen as soon as it happens, whichever stage it is in
+        ExecutorService executor = Executors.newFixedThreadPool(2 * numWorkers + 1);
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            // Stage 1: pair test lines with their tags
+            futures.add(completion.submit(() -> {
+                try (testScan; tagScan) {
+                    int index = 0;
+                    while (testScan.hasNextLine() && tagScan.hasNextLine()) {
+                        readQueue.put(new Line(index++, testScan.nextLine(), tagScan.nextLine()));
+                    }
+                } finally {
+                    for (int i = 0; i < numWorkers; i++) readQueue.put(END);
+                }
+                return null;
+            }));
+
+            // Stage 2: preprocess and lemmatize. The last lemmatizer to finish
+            // tells the classifiers to stop.
+            AtomicInteger lemmatizersLeft = new AtomicInteger(numWorkers);
+            for (int i = 0; i < numWorkers; i++) {
+                futures.add(completion.submit(() -> {
+                    for (Line line = readQueue.take(); line != END; line = readQueue.take()) {
+                        line.lemmas = Preprocessing.lemmatizeString(Preprocessing.preprocessString(line.text));
+                        lemmaQueue.put(line);
+                    }
+                    if (lemmatizersLeft.decrementAndGet() == 0) {
+                        for (int j = 0; j < numWorkers; j++) lemmaQueue.put(END);
+                    }
+                    return null;
+                }));
+            }
+
+            // Stage 3: classify
+            for (int i = 0; i < numWorkers; i++) {
+                futures.add(completion.submit(() -> {
+                    for (Line line = lemmaQueue.take(); line != END; line = lemmaQueue.take()) {
+                        line.prediction = classifier.categorize(line.lemmas);
+                        done.add(line);
+                    }
+                    return null;
+                }));
+            }
+
+            // Wait for every task in the order they finish. On the first
+            // failure the other tasks are cancelled, see finally, since the
+            // stages around the failed one would block on their queues forever.
+            try {
+                for (int i = 0; i < futures.size(); i++) completion.take().get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Evaluation was interrupted", exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException("Evaluation failed", cause);
+            }
+        } finally {
+            for (Future<Void> future : futures) future.cancel(true);
+            executor.shutdownNow();
+        }
+
+        // Put the lines back in test file order
+        List<Line> lines = new ArrayList<>(done);
+        lines.sort(Comparator.comparingInt(line -> line.index));
+        Result result = new Result();
+        for (Line line : lines) {
+            result.tests.add(line.lemmas);
+            result.tags.add(SentimentClassifier.capitalize(line.tag));
+            result.predictions.add(line.prediction);
+        }
+        return result;
+    }
+}
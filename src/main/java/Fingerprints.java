@@ -0,0 +1,27 @@
+// 64 bit String fingerprints. With 64 bits, the chance of two different
+// tweets sharing a fingerprint stays below one in a million up to several
+// million tweets.
+public final class Fingerprints {
+
+    private Fingerprints() {
+    }
+
+    public static long of(CharSequence str) {
+        return of(str, 0, str.length());
+    }
+
+    // 64 bit FNV-1a hash of str[start, end) followed by a final avalanche step
+    // Source:
+    // http://www.isthe.com/chongo/tech/comp/fnv/
+    public static long of(CharSequence str, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= str.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
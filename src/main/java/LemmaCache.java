@@ -0,0 +1,133 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Bounded, thread-safe least recently used cache from preprocessed Strings to
+// their lemmatized form. Bitcoin tweets are very repetitive (retweets, bot
+// spam), so most lemmatizations can be answered by a hash lookup instead of a
+// CoreNLP pass. The cache is split into segments, each guarded by its own
+// lock, so threads working on different Strings rarely contend. Lemmas are
+// computed outside the lock; two threads missing on the same String at the
+// same time may both compute it, which is harmless as CoreNLP is
+// deterministic.
+public class LemmaCache {
+
+    private static final int NUM_SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final int capacity;
+
+    // One LRU map per segment, LinkedHashMap in access order evicts the least
+    // recently used entry once the segment is full
+    private final class Segment extends LinkedHashMap<String, String> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() <= maxSize) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    // Creates a cache that holds at most capacity entries. Throws
+    // IllegalArgumentException if capacity is negative.
+    public LemmaCache(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity must not be negative");
+        this.capacity = capacity;
+        int segmentSize = (capacity + NUM_SEGMENTS - 1) / NUM_SEGMENTS;
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    // Returns the cached lemmas of key, or computes them with lemmatizer and
+    // caches them.
+    public String get(String key, Function<String, String> lemmatizer) {
+        if (capacity == 0) {
+            misses.increment();
+            return lemmatizer.apply(key);
+        }
+
+        Segment segment = segmentFor(key);
+        String lemmas;
+        synchronized (segment) {
+            lemmas = segment.get(key);
+        }
+        if (lemmas != null) {
+            hits.increment();
+            return lemmas;
+        }
+
+        misses.increment();
+        lemmas = lemmatizer.apply(key);
+        synchronized (segment) {
+            segment.put(key, lemmas);
+        }
+        return lemmas;
+    }
+
+    // Removes every entry, statistics are kept
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Fraction of lookups answered from the cache, 0 if there were none
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LemmaCache[size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.3f]",
+                size(), capacity, getHits(), getMisses(), getEvictions(), getHitRatio());
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (NUM_SEGMENTS - 1)];
+    }
+}
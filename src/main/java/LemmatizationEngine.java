@@ -0,0 +1,116 @@
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.CoreDocument;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Long-lived lemmatization engine backed by a single Stanford CoreNLP
+// pipeline. Building a pipeline loads the tokenizer and POS tagger models,
+// which costs seconds, so the engine is created once per JVM and shared.
+// StanfordCoreNLP.annotate is safe to call from several threads at once as
+// long as the annotators are not reconfigured, so callers may share the
+// engine freely.
+// Source:
+// https://stanfordnlp.github.io/CoreNLP/memory-time.html
+public final class LemmatizationEngine {
+
+    // Number of distinct Strings whose lemmas are kept in memory
+    public static final int CACHE_CAPACITY = 100_000;
+
+    // When set, Strings made of known words are lemmatized from the token
+    // dictionary instead of the CoreNLP pipeline, see TokenLemmaDictionary
+    private static volatile boolean fastPath = false;
+
+    private final StanfordCoreNLP pipeline;
+    private final LemmaCache cache = new LemmaCache(CACHE_CAPACITY);
+    private final TokenLemmaDictionary dictionary = new TokenLemmaDictionary();
+    private final MetricsRegistry.Timer annotateTimer = MetricsRegistry.getInstance().timer("lemmatize.annotate");
+    private final MetricsRegistry.Histogram tokenHistogram = MetricsRegistry.getInstance().histogram("lemmatize.tokens");
+
+    // Holder idiom: the pipeline is built lazily on first use and exactly once,
+    // without synchronizing every call to getInstance.
+    private static final class Holder {
+        private static final LemmatizationEngine INSTANCE = new LemmatizationEngine();
+    }
+
+    private LemmatizationEngine() {
+        Properties properties = new Properties();
+        properties.setProperty("annotators", "tokenize, ssplit, pos, lemma");
+        pipeline = new StanfordCoreNLP(properties);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("lemmatize.cache.size", cache::size);
+        metrics.gauge("lemmatize.cache.hits", cache::getHits);
+        metrics.gauge("lemmatize.cache.misses", cache::getMisses);
+        metrics.gauge("lemmatize.cache.hitRatio", cache::getHitRatio);
+    }
+
+    // Returns the shared engine, loading the CoreNLP models on the first call.
+    public static LemmatizationEngine getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // Turns the token dictionary fast path on or off. Off by default, as the
+    // fast path may differ from CoreNLP for words whose lemma depends on the
+    // context they are in.
+    public static void setFastPath(boolean enabled) {
+        fastPath = enabled;
+    }
+
+    public static boolean isFastPath() {
+        return fastPath;
+    }
+
+    // Replaces words in a String with their simple dictionary form. Every
+    // lemma is followed by a single space, matching the training file format.
+    // Repeated Strings are answered from the lemma cache.
+    public String lemmatize(String str) {
+        return cache.get(str, this::lemmatizeUncached);
+    }
+
+    private String lemmatizeUncached(String str) {
+        if (fastPath) {
+            String lemmas = dictionary.lemmatize(str);
+            if (lemmas != null) return lemmas;
+        }
+        return annotateAndLearn(str);
+    }
+
+    // Runs the CoreNLP pipeline on a String, bypassing the cache and the fast
+    // path. The token dictionary learns from the result when the fast path is
+    // on. Every pass is timed as lemmatize.annotate.
+    String annotateAndLearn(String str) {
+        CoreDocument document = new CoreDocument(str);
+        try (MetricsRegistry.Timer.Context context = annotateTimer.time()) {
+            pipeline.annotate(document);
+        }
+        tokenHistogram.record(document.tokens().size());
+        if (fastPath) dictionary.learn(str, document.tokens());
+        StringBuilder builder = new StringBuilder(str.length() + 16);
+        for (CoreLabel token : document.tokens()) {
+            builder.append(token.lemma()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    // Word to lemma memory used by the fast path
+    public TokenLemmaDictionary getDictionary() {
+        return dictionary;
+    }
+
+    // Hit, miss and eviction statistics of the lemma cache
+    public LemmaCache getCache() {
+        return cache;
+    }
+
+    // Lemmatizes a batch of Strings and returns the results in input order.
+    public List<String> lemmatizeAll(List<String> strings) {
+        List<String> lemmas = new ArrayList<>(strings.size());
+        for (String str : strings) {
+            lemmas.add(lemmatize(str));
+        }
+        return lemmas;
+    }
+}
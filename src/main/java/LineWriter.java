@@ -0,0 +1,105 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Writes text to a file through one large direct NIO buffer. Characters are
+// encoded straight into the buffer, which goes to the file channel whenever
+// it is full, so writing a file never needs memory proportional to its size.
+// Unmappable characters are replaced, like PrintWriter does.
+// Source:
+// https://docs.oracle.com/javase/8/docs/api/java/nio/channels/FileChannel.html
+public class LineWriter implements Closeable {
+
+    // Default size of the byte buffer, 1 MiB
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+
+    // Opens fileName for writing in the default charset, replacing any
+    // existing file.
+    public LineWriter(String fileName) throws IOException {
+        this(fileName, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineWriter(String fileName, Charset charset, int bufferSize) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    // Writes text as it is
+    public void write(CharSequence text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + chars.remaining());
+            chars.append(text, start, end);
+            start = end;
+            encode(false);
+        }
+    }
+
+    // Writes text followed by a line feed
+    public void writeLine(CharSequence text) throws IOException {
+        write(text);
+        newLine();
+    }
+
+    // Writes a line feed, the line separator used by the text files of this
+    // project
+    public void newLine() throws IOException {
+        if (!chars.hasRemaining()) encode(false);
+        chars.put('\n');
+    }
+
+    // Encodes the buffered characters, writing out the byte buffer whenever it
+    // fills up
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    // Writes out everything that is still buffered and closes the file
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
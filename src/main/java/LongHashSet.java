@@ -0,0 +1,73 @@
+// Compact set of 64 bit values, eg. String fingerprints. Values are kept in
+// a single long array with open addressing and linear probing, so a set of n
+// fingerprints costs about 16n bytes instead of the ~100n bytes of a
+// HashSet<String>. Not thread-safe.
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+    private boolean containsEmpty; // EMPTY marks free slots, so it is tracked on its own
+
+    public LongHashSet() {
+        this(1 << 10);
+    }
+
+    // Creates a set that holds expectedSize values without growing
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        table = new long[capacity];
+    }
+
+    // Adds value to the set. Returns false if it was already there.
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) return false;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        if (2 * size > table.length) resize();
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int slot = mix(value) & mask;
+            while (table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        return (int) (value ^ value >>> 32);
+    }
+}
@@ -0,0 +1,140 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.DoubleSupplier;
+
+// Serves the metrics of the MetricsRegistry in the Prometheus text format on
+// http://127.0.0.1:<port>/metrics, using the HTTP server built into the JDK.
+// It only listens on the loopback interface. Metric names get a sentiment_
+// prefix, with dots turned into underscores:
+//   counters   -> <name>_total
+//   timers     -> histogram <name>_seconds
+//   histograms -> histogram <name>
+//   gauges     -> <name>
+// and the model in use is published as sentiment_model_info{version="..."}.
+// Histogram buckets end at the power of two boundaries of the registry's
+// buckets, so their counts are exact: le is 2^k - 1 nanoseconds, converted to
+// seconds, from about a microsecond to 18 minutes for timers, and 2^k - 1 up
+// to about a million for other histograms. Unlike summary quantiles, these
+// buckets can be aggregated across instances and over time with
+// histogram_quantile.
+// Sources:
+// https://prometheus.io/docs/instrumenting/exposition_formats/
+// https://docs.oracle.com/en/java/javase/17/docs/api/jdk.httpserver/com/sun/net/httpserver/HttpServer.html
+public class MetricsHttpServer {
+
+    // Range of k in the 2^k - 1 bucket bounds, see above
+    private static final int TIMER_MIN_EXPONENT = 10;
+    private static final int TIMER_MAX_EXPONENT = 40;
+    private static final int HISTOGRAM_MAX_EXPONENT = 20;
+
+    private final HttpServer server;
+    private final String modelVersion;
+
+    // Starts serving on the given port. Port 0 picks a free port, see
+    // getPort.
+    public MetricsHttpServer(int port, String modelVersion) throws IOException {
+        this.modelVersion = modelVersion;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render(MetricsRegistry.getInstance()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // Formats every metric of the registry, sorted by name
+    String render(MetricsRegistry metrics) {
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP sentiment_model_info Model in use\n");
+        text.append("# TYPE sentiment_model_info gauge\n");
+        text.append("sentiment_model_info{version=\"").append(escapeLabel(modelVersion)).append("\"} 1\n");
+
+        for (Map.Entry<String, MetricsRegistry.Counter> entry : new TreeMap<>(metrics.getCounters()).entrySet()) {
+            String name = metricName(entry.getKey()) + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            sample(text, name, "", entry.getValue().getCount());
+        }
+        for (Map.Entry<String, MetricsRegistry.Timer> entry : new TreeMap<>(metrics.getTimers()).entrySet()) {
+            histogram(text, metricName(entry.getKey()) + "_seconds", entry.getValue().getHistogram(), 1e-9,
+                    TIMER_MIN_EXPONENT, TIMER_MAX_EXPONENT);
+        }
+        for (Map.Entry<String, MetricsRegistry.Histogram> entry : new TreeMap<>(metrics.getHistograms()).entrySet()) {
+            histogram(text, metricName(entry.getKey()), entry.getValue(), 1, 0, HISTOGRAM_MAX_EXPONENT);
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<>(metrics.getGauges()).entrySet()) {
+            String name = metricName(entry.getKey());
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            sample(text, name, "", entry.getValue().getAsDouble());
+        }
+        return text.toString();
+    }
+
+    // Writes a histogram with cumulative buckets up to 2^k - 1 for k from
+    // minExponent to maxExponent, with its values multiplied by scale
+    private static void histogram(StringBuilder text, String name, MetricsRegistry.Histogram histogram,
+                                  double scale, int minExponent, int maxExponent) {
+        long[] counts = histogram.getPowerOfTwoCounts(maxExponent);
+        text.append("# TYPE ").append(name).append(" histogram\n");
+        for (int k = minExponent; k <= maxExponent; k++) {
+            String bound = formatValue(((1L << k) - 1) * scale);
+            sample(text, name + "_bucket", "{le=\"" + bound + "\"}", counts[k]);
+        }
+        sample(text, name + "_bucket", "{le=\"+Inf\"}", counts[maxExponent + 1]);
+        sample(text, name + "_sum", "", histogram.getSum() * scale);
+        sample(text, name + "_count", "", counts[maxExponent + 1]);
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        return String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    // Turns a registry name like preprocess.read into sentiment_preprocess_read
+    static String metricName(String name) {
+        StringBuilder builder = new StringBuilder("sentiment_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,355 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Process wide registry of named counters, timers and histograms. Stages of
+// the pipeline record into it as they run, and snapshot returns the current
+// value of every metric as a flat, sorted map, which is what the periodic log
+// and the JMX bean show. Metrics are created on first use and never removed.
+// All metrics are thread-safe and lock free, recording is a few atomic adds.
+// Timers and histograms only record while enabled is set, so the hot paths do
+// not contend on their buckets in runs that never read them.
+// Gauges are values read when the snapshot is taken, eg. the size of a cache.
+// Source:
+// https://docs.oracle.com/javase/tutorial/jmx/mbeans/index.html
+public final class MetricsRegistry {
+
+    // Name of the JMX bean that shows the snapshot
+    public static final String OBJECT_NAME = "BitcoinSentimentAnalysis:type=Metrics";
+
+    // Whether timers and histograms record, set by --metrics and
+    // --metrics-port. Counters always count.
+    public static boolean enabled = false;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+
+    // Holder idiom, see LemmatizationEngine
+    private static final class Holder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    // Returns the registry shared by the whole process
+    public static MetricsRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // Monotonic count of events, eg. rows read
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    // Distribution of non-negative long values in log-linear buckets: every
+    // power of two range is cut into 8 buckets, so percentiles are accurate to
+    // within 12.5%. Memory use is fixed.
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            if (!enabled) return;
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        // Returns an upper bound of the value below which the fraction q of
+        // the recorded values fall, 0 if nothing was recorded
+        public long getPercentile(double q) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) total += buckets.get(i);
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(1, rank)) return Math.min(upperBoundOf(i), getMax());
+            }
+            return getMax();
+        }
+
+        // Returns the number of recorded values below 2^k for every k from 0
+        // to maxExponent, followed by the number of all recorded values. Powers
+        // of two are bucket boundaries, so the counts are exact, and they are
+        // read in one pass so they never decrease even while values are being
+        // recorded.
+        public long[] getPowerOfTwoCounts(int maxExponent) {
+            if (maxExponent < 0 || maxExponent > 62)
+                throw new IllegalArgumentException("Exponent must be between 0 and 62");
+            long[] counts = new long[maxExponent + 2];
+            long seen = 0;
+            int exponent = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                while (exponent <= maxExponent && upperBoundOf(i) >= (1L << exponent)) {
+                    counts[exponent++] = seen;
+                }
+                seen += buckets.get(i);
+            }
+            while (exponent <= maxExponent) counts[exponent++] = seen;
+            counts[maxExponent + 1] = seen;
+            return counts;
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+            return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+
+    // Histogram of durations in nanoseconds. Time a block with
+    //   try (MetricsRegistry.Timer.Context context = timer.time()) { ... }
+    // time returns null while metrics are disabled, which try-with-resources
+    // skips, so not even the clock is read.
+    public static final class Timer {
+        private final Histogram histogram = new Histogram();
+
+        public final class Context implements AutoCloseable {
+            private final long start = System.nanoTime();
+
+            @Override
+            public void close() {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public Context time() {
+            return enabled ? new Context() : null;
+        }
+
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    // Registers a value that is read when a snapshot is taken, eg. the size
+    // of a cache. Replaces an earlier gauge of the same name.
+    public void gauge(String name, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, Timer> getTimers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    public Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    public Map<String, DoubleSupplier> getGauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+    // Current value of every metric, sorted by name. A counter is reported as
+    // name.count; a timer as name.count, name.totalSeconds and its mean, p50,
+    // p99 and max in milliseconds; a histogram as name.count and its mean,
+    // p50, p99 and max; a gauge as name.
+    public SortedMap<String, Double> snapshot() {
+        SortedMap<String, Double> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name + ".count", (double) counter.getCount()));
+        timers.forEach((name, timer) -> {
+            Histogram histogram = timer.getHistogram();
+            snapshot.put(name + ".count", (double) histogram.getCount());
+            snapshot.put(name + ".totalSeconds", histogram.getSum() / 1e9);
+            snapshot.put(name + ".meanMillis", histogram.getMean() / 1e6);
+            snapshot.put(name + ".p50Millis", histogram.getPercentile(0.5) / 1e6);
+            snapshot.put(name + ".p99Millis", histogram.getPercentile(0.99) / 1e6);
+            snapshot.put(name + ".maxMillis", histogram.getMax() / 1e6);
+        });
+        histograms.forEach((name, histogram) -> {
+            snapshot.put(name + ".count", (double) histogram.getCount());
+            snapshot.put(name + ".mean", histogram.getMean());
+            snapshot.put(name + ".p50", (double) histogram.getPercentile(0.5));
+            snapshot.put(name + ".p99", (double) histogram.getPercentile(0.99));
+            snapshot.put(name + ".max", (double) histogram.getMax());
+        });
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsDouble()));
+        return snapshot;
+    }
+
+    // Formats the snapshot one metric per line
+    public String report() {
+        StringBuilder builder = new StringBuilder("Metrics:");
+        snapshot().forEach((name, value) -> builder.append(String.format("%n  %-40s %.3f", name, value)));
+        return builder.toString();
+    }
+
+    // Prints the report every period on a daemon thread, until
+    // stopLogging is called
+    public synchronized void startLogging(long period, TimeUnit unit) {
+        stopLogging();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.println(report()), period, period, unit);
+    }
+
+    public synchronized void stopLogging() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // Publishes the snapshot as the read-only attributes of a JMX bean named
+    // OBJECT_NAME on the platform MBean server, eg. for jconsole. Does nothing
+    // if the bean is already registered.
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(objectName))
+                server.registerMBean(new SnapshotMBean(), objectName);
+        } catch (JMException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    // Bean whose attributes are the entries of the snapshot at the time they
+    // are read
+    private final class SnapshotMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Double value = snapshot().get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            SortedMap<String, Double> snapshot = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (snapshot.containsKey(attribute))
+                    list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+            return list;
+        }
+
+        // Metrics are read-only. Unknown attributes are reported as such,
+        // known ones refuse any value.
+        @Override
+        public void setAttribute(Attribute attribute)
+                throws AttributeNotFoundException, InvalidAttributeValueException {
+            if (!snapshot().containsKey(attribute.getName()))
+                throw new AttributeNotFoundException(attribute.getName());
+            throw new InvalidAttributeValueException("Metric " + attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        // The bean has no operations
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "No operation " + actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            SortedMap<String, Double> snapshot = snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+            int i = 0;
+            for (String name : snapshot.keySet()) {
+                attributes[i++] = new MBeanAttributeInfo(name, "java.lang.Double", name, true, false, false);
+            }
+            return new MBeanInfo(SnapshotMBean.class.getName(), "Pipeline metrics", attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.ml.AbstractEventTrainer;
+import opennlp.tools.util.TrainingParameters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+// Stores a trained DoccatModel on disk next to a small properties file that
+// describes how it was made: the input csv file, the number of tweets, the
+// preprocessing configuration, the training parameters and a fingerprint of
+// all of these together with the csv contents. On startup the stored model is
+// only reused when the fingerprint still matches, so changing the data or any
+// parameter triggers a retrain.
+// Hashing a large csv file takes seconds, so the properties file also keeps
+// the size, modification time and digest of the csv file, and the file is
+// only hashed again when its size or modification time changed.
+// Source:
+// https://opennlp.apache.org/docs/1.9.4/manual/opennlp.html#tools.doccat
+public class ModelStore {
+
+    private final File modelFile;
+    private final File infoFile;
+
+    // Digest of the csv file computed last, with the file it belongs to
+    private String csvPath;
+    private long csvSize;
+    private long csvModified;
+    private String csvDigest;
+
+    // Creates a store that keeps the model in modelPath and its description in
+    // modelPath + ".properties".
+    public ModelStore(String modelPath) {
+        this.modelFile = new File(modelPath);
+        this.infoFile = new File(modelPath + ".properties");
+    }
+
+    // Computes a SHA-256 fingerprint over the csv file contents, the number of
+    // tweets used and the preprocessing configuration, ie. everything the
+    // preprocessed train and test sets depend on.
+    public String preprocessingFingerprint(String csvPath, int numTweets) throws IOException {
+        return sha256(csvDigest(csvPath) + "\nnumTweets=" + numTweets
+                + "\npreprocessing=" + Preprocessing.configuration());
+    }
+
+    // Computes a SHA-256 fingerprint over the preprocessing fingerprint and
+    // the training parameters.
+    public String fingerprint(String csvPath, int numTweets, TrainingParameters parameters) throws IOException {
+        return sha256(preprocessingFingerprint(csvPath, numTweets) + "\ntraining=" + describe(parameters));
+    }
+
+    // Returns the SHA-256 digest of the csv file contents. The digest stored
+    // with the model, or the one computed last, is reused as long as the
+    // file keeps its path, size and modification time.
+    private String csvDigest(String path) throws IOException {
+        File csvFile = new File(path);
+        long size = csvFile.length();
+        long modified = csvFile.lastModified();
+        if (csvDigest != null && path.equals(csvPath) && size == csvSize && modified == csvModified)
+            return csvDigest;
+
+        Properties info = null;
+        if (infoFile.isFile()) {
+            try {
+                info = readInfo();
+            } catch (IOException exception) {
+                // A damaged description is ignored, the file is hashed again
+                exception.printStackTrace();
+            }
+        }
+        String digest = null;
+        if (info != null && path.equals(info.getProperty("csv"))
+                && Long.toString(size).equals(info.getProperty("csv.size"))
+                && Long.toString(modified).equals(info.getProperty("csv.modified")))
+            digest = info.getProperty("csv.sha256");
+        if (digest == null) {
+            MessageDigest messageDigest = newDigest();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(csvFile))) {
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    messageDigest.update(buffer, 0, read);
+                }
+            }
+            digest = toHex(messageDigest.digest());
+
+            // The file was only touched, eg. copied again: remember its new
+            // size and modification time so it is not hashed on every start
+            if (info != null && path.equals(info.getProperty("csv")) && digest.equals(info.getProperty("csv.sha256"))) {
+                info.setProperty("csv.size", Long.toString(size));
+                info.setProperty("csv.modified", Long.toString(modified));
+                writeInfo(info);
+            }
+        }
+
+        csvPath = path;
+        csvSize = size;
+        csvModified = modified;
+        csvDigest = digest;
+        return digest;
+    }
+
+    // Returns the stored model if it was trained with the given fingerprint,
+    // or null if there is no stored model or it is out of date.
+    public DoccatModel load(String fingerprint) {
+        if (!modelFile.isFile() || !infoFile.isFile())
+            return null;
+        try {
+            Properties info = readInfo();
+            if (!fingerprint.equals(info.getProperty("fingerprint")))
+                return null;
+            return new DoccatModel(modelFile);
+        } catch (IOException exception) {
+            // A damaged store is treated like a missing one, the model is retrained
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    // Serializes the model and writes its description. The description is
+    // written last, so an interrupted save never looks up to date.
+    public void save(DoccatModel model, String fingerprint, String csvPath, int numTweets,
+                     TrainingParameters parameters) throws IOException {
+        infoFile.delete();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(modelFile))) {
+            model.serialize(out);
+        }
+
+        Properties info = new Properties();
+        info.setProperty("fingerprint", fingerprint);
+        info.setProperty("csv", csvPath);
+        if (csvPath.equals(this.csvPath)) {
+            info.setProperty("csv.size", Long.toString(csvSize));
+            info.setProperty("csv.modified", Long.toString(csvModified));
+            info.setProperty("csv.sha256", csvDigest);
+        }
+        info.setProperty("numTweets", Integer.toString(numTweets));
+        info.setProperty("preprocessing", Preprocessing.configuration());
+        for (Map.Entry<String, Object> entry : parameters.getObjectSettings().entrySet()) {
+            info.setProperty("training." + entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        writeInfo(info);
+    }
+
+    private Properties readInfo() throws IOException {
+        Properties info = new Properties();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(infoFile))) {
+            info.load(in);
+        }
+        return info;
+    }
+
+    private void writeInfo(Properties info) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(infoFile))) {
+            info.store(out, "Sentiment model description, see ModelStore");
+        }
+    }
+
+    // Records the preprocessing fingerprint of files written by
+    // preprocessing, eg. the test set, in the properties file at path
+    public static void writeFingerprint(String path, String fingerprint) throws IOException {
+        Properties info = new Properties();
+        info.setProperty("fingerprint", fingerprint);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path))) {
+            info.store(out, "Preprocessing fingerprint, see ModelStore");
+        }
+    }
+
+    // Returns the fingerprint recorded by writeFingerprint, or null if there
+    // is none
+    public static String readFingerprint(String path) {
+        if (!new File(path).isFile())
+            return null;
+        Properties info = new Properties();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+            info.load(in);
+        } catch (IOException exception) {
+            return null;
+        }
+        return info.getProperty("fingerprint");
+    }
+
+    // Canonical text form of the training parameters that go into the
+    // fingerprint. Settings are sorted so the order they were put in does not
+    // matter. The thread count and the data indexer are left out on purpose,
+    // so a model can be reused on a host with a different number of cores or
+    // another indexer. Such models are only approximately equal, not bit for
+    // bit: multi-threaded GIS adds up the partial expectations of its threads
+    // in another order, which changes the last bits of the weights.
+    private static String describe(TrainingParameters parameters) {
+        Map<String, String> settings = new TreeMap<>();
+        parameters.getObjectSettings().forEach((key, value) -> settings.put(key, String.valueOf(value)));
+        settings.remove(TrainingParameters.THREADS_PARAM);
+        settings.remove(AbstractEventTrainer.DATA_INDEXER_PARAM);
+        return settings.toString();
+    }
+
+    private static String sha256(String text) {
+        MessageDigest digest = newDigest();
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
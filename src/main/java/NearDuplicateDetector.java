@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Streaming near duplicate detector for tweets based on MinHash and
+// locality sensitive hashing. Spam campaigns repeat the same text with a
+// different link, handle or number, which exact deduplication misses.
+//
+// Every text is reduced to its set of word bigrams (shingles) and summarized
+// by a MinHash signature of numHashes values. The signature is cut into
+// numBands bands; two texts whose signatures agree on a whole band become
+// candidates, and a candidate is accepted as a near duplicate if the
+// signatures agree on at least threshold of all values, which estimates the
+// Jaccard similarity of the shingle sets.
+//
+// Texts are processed in a single pass. The first text of every cluster is
+// its representative. Memory is bounded: at most maxRepresentatives
+// signatures are kept (the oldest are recycled), and the band index is a
+// fixed size table where newer entries overwrite older ones.
+// Sources:
+// https://en.wikipedia.org/wiki/MinHash
+// http://infolab.stanford.edu/~ullman/mmds/ch3.pdf
+public class NearDuplicateDetector {
+
+    private final int numHashes;
+    private final int numBands;
+    private final int rowsPerBand;
+    private final double threshold;
+    private final int maxRepresentatives;
+
+    private final long[] seeds; // One seed per MinHash function
+    private final int[] signatures; // numHashes values per representative slot
+    private final int[] representativeIds; // Row id of the text in each slot
+    private int nextSlot;
+    private int usedSlots;
+
+    private final long[] bandKeys;
+    private final int[] bandSlots;
+
+    private final int[] signature; // Scratch signature of the current text
+    private long numTexts;
+    private long numNearDuplicates;
+
+    // 64 hash functions in 16 bands of 4, accepting estimated Jaccard
+    // similarities of 0.8 or more, with up to 50000 clusters remembered.
+    public NearDuplicateDetector() {
+        this(64, 16, 0.8, 50_000);
+    }
+
+    // Throws IllegalArgumentException if numBands does not divide numHashes
+    // or the threshold is not in (0, 1].
+    public NearDuplicateDetector(int numHashes, int numBands, double threshold, int maxRepresentatives) {
+        if (numHashes < 1 || numBands < 1 || numHashes % numBands != 0)
+            throw new IllegalArgumentException("Number of bands must divide number of hashes");
+        if (threshold <= 0 || threshold > 1)
+            throw new IllegalArgumentException("Threshold must be between 0 and 1");
+        if (maxRepresentatives < 1)
+            throw new IllegalArgumentException("Maximum number of representatives must be positive");
+
+        this.numHashes = numHashes;
+        this.numBands = numBands;
+        this.rowsPerBand = numHashes / numBands;
+        this.threshold = threshold;
+        this.maxRepresentatives = maxRepresentatives;
+
+        // Fixed seeds keep the clustering reproducible between runs
+        SplittableRandom random = new SplittableRandom(42);
+        seeds = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) seeds[i] = random.nextLong();
+
+        signatures = new int[maxRepresentatives * numHashes];
+        representativeIds = new int[maxRepresentatives];
+        int tableSize = Integer.highestOneBit(Math.max(16, maxRepresentatives * numBands - 1)) << 1;
+        bandKeys = new long[tableSize];
+        bandSlots = new int[tableSize];
+        Arrays.fill(bandSlots, -1);
+        signature = new int[numHashes];
+    }
+
+    // Assigns the text with the given row id to a cluster and returns the row
+    // id of the cluster's representative. A text that starts a new cluster is
+    // its own representative.
+    public int assign(CharSequence text, int rowId) {
+        numTexts++;
+        computeSignature(text);
+
+        // Look for a representative that shares a band and is similar enough
+        for (int band = 0; band < numBands; band++) {
+            long key = bandKey(band);
+            int index = (int) (key ^ key >>> 32) & (bandKeys.length - 1);
+            int slot = bandSlots[index];
+            if (slot >= 0 && bandKeys[index] == key && similarity(slot) >= threshold) {
+                numNearDuplicates++;
+                return representativeIds[slot];
+            }
+        }
+
+        // Start a new cluster, recycling the oldest slot when all are in use
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % maxRepresentatives;
+        usedSlots = Math.min(usedSlots + 1, maxRepresentatives);
+        System.arraycopy(signature, 0, signatures, slot * numHashes, numHashes);
+        representativeIds[slot] = rowId;
+        for (int band = 0; band < numBands; band++) {
+            long key = bandKey(band);
+            int index = (int) (key ^ key >>> 32) & (bandKeys.length - 1);
+            bandKeys[index] = key;
+            bandSlots[index] = slot;
+        }
+        return rowId;
+    }
+
+    // Number of texts assigned so far
+    public long getNumTexts() {
+        return numTexts;
+    }
+
+    // Number of texts that joined an existing cluster
+    public long getNumNearDuplicates() {
+        return numNearDuplicates;
+    }
+
+    // Number of clusters started so far
+    public long getNumClusters() {
+        return numTexts - numNearDuplicates;
+    }
+
+    // Number of representative signatures currently stored
+    public int getNumStoredRepresentatives() {
+        return usedSlots;
+    }
+
+    // MinHash signature over the word bigrams of text. Each shingle is hashed
+    // once with a 64 bit fingerprint, which is then mixed with one seed per
+    // hash function. A text of a single word uses that word as its only
+    // shingle.
+    private void computeSignature(CharSequence text) {
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int length = text.length();
+        int previousStart = -1;
+        int start = 0;
+        while (start < length) {
+            while (start < length && text.charAt(start) == ' ') start++;
+            if (start == length) break;
+            int end = start;
+            while (end < length && text.charAt(end) != ' ') end++;
+
+            if (previousStart >= 0) addShingle(Fingerprints.of(text, previousStart, end));
+            previousStart = start;
+            start = end;
+        }
+        if (previousStart >= 0 && signature[0] == Integer.MAX_VALUE)
+            addShingle(Fingerprints.of(text, previousStart, length));
+    }
+
+    private void addShingle(long shingle) {
+        for (int i = 0; i < numHashes; i++) {
+            int value = (int) (mix(shingle ^ seeds[i]) >>> 33);
+            if (value < signature[i]) signature[i] = value;
+        }
+    }
+
+    // Fraction of signature values the current text shares with a stored slot
+    private double similarity(int slot) {
+        int offset = slot * numHashes;
+        int equal = 0;
+        for (int i = 0; i < numHashes; i++) {
+            if (signatures[offset + i] == signature[i]) equal++;
+        }
+        return (double) equal / numHashes;
+    }
+
+    // Hash of one band of the current signature
+    private long bandKey(int band) {
+        long key = band + 1;
+        int from = band * rowsPerBand;
+        for (int i = from; i < from + rowsPerBand; i++) {
+            key = mix(key * 31 + signature[i]);
+        }
+        return key;
+    }
+
+    // Final mixing step of the SplitMix64 generator
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
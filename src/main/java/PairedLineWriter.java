@@ -0,0 +1,50 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+// Writes two text files in lock-step, eg. test tweets and their tags. Every
+// pair of Strings ends up on the same line number of both files, and each
+// file is streamed through its own LineWriter buffer.
+public class PairedLineWriter implements Closeable {
+
+    private final LineWriter first;
+    private final LineWriter second;
+    private long lines;
+
+    public PairedLineWriter(String firstFileName, String secondFileName) throws IOException {
+        first = new LineWriter(firstFileName);
+        LineWriter opened = null;
+        try {
+            opened = new LineWriter(secondFileName);
+        } finally {
+            if (opened == null) first.close();
+        }
+        second = opened;
+    }
+
+    // Writes a line to each file. Lines are separated by a line feed, the
+    // first line is not preceded by one.
+    public void writePair(CharSequence firstText, CharSequence secondText) throws IOException {
+        if (lines > 0) {
+            first.newLine();
+            second.newLine();
+        }
+        first.write(firstText);
+        second.write(secondText);
+        lines++;
+    }
+
+    // Number of pairs written so far
+    public long getLines() {
+        return lines;
+    }
+
+    // Ends both files with the platform line separator, like PrintWriter.println,
+    // and closes them.
+    @Override
+    public void close() throws IOException {
+        try (LineWriter a = first; LineWriter b = second) {
+            a.write(System.lineSeparator());
+            b.write(System.lineSeparator());
+        }
+    }
+}
@@ -1,15 +1,37 @@
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.CoreDocument;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.doccat.DocumentSampleStream;
+import opennlp.tools.tokenize.WhitespaceTokenizer;
+import opennlp.tools.util.CollectionObjectStream;
+import opennlp.tools.util.InputStreamFactory;
+import opennlp.tools.util.MarkableFileInputStreamFactory;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.io.csv.CsvReadOptions;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Properties;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 
 // FEATURE 1: Methods for data frame management and String processing
 
@@ -59,6 +81,58 @@ public class Preprocessing {
     public static LinkRemover lambdaLinks = (String str) -> str.replaceAll("http.*\s", " ").replaceAll("http.*", " ");
     public static SpecialRemover lambdaSpecial = (String str) -> str.replaceAll("['.`~|<>,/:;-=+_&^%()]", "").replace("\"", "");
 
+    // Directory of the train and test text files written by Preprocess and
+    // read by SentimentAnalysis, eg. trainset.txt
+    public static String dataDirectory = "src/main";
+
+    // Proportion of the data frame rows that go into the training set
+    public static final double TRAIN_FRACTION = 0.8;
+
+    // When set, Preprocess streams the csv file row by row instead of loading
+    // it into a data frame, see PreprocessStreaming
+    public static boolean streamingIngestion = false;
+
+    // When set, duplicate train rows are dropped after cleaning so they
+    // neither slow down nor bias training. Rows are duplicates when they are
+    // equal once retweet markers are ignored, see duplicateKey, so retweets of
+    // the same tweet and retweets of a tweet that is also in the data count
+    // as copies. Off by default, as it changes the training data.
+    public static boolean dropDuplicates = false;
+
+    // When set, train rows that are near duplicates of an earlier row, eg.
+    // spam that only differs by a number, are dropped as well, keeping one
+    // row per cluster, see NearDuplicateDetector
+    public static boolean dropNearDuplicates = false;
+
+    // When set, Preprocess also writes the train set to trainset.txt. Training
+    // reads the train set from memory either way, the file is only for
+    // inspection or for training later with SentimentAnalysis.trainModel().
+    // Streaming mode always writes the file, see Preprocess.
+    public static boolean exportTrainFile = false;
+
+    // When set, Preprocess spills the training samples to a temporary file,
+    // see DiskSampleStream, instead of holding them in memory until training.
+    // Together with the two pass data indexer, see TrainingConfig, this keeps
+    // the heap used by training independent of the number of tweets.
+    // Streaming mode reads the samples back from trainset.txt either way.
+    public static boolean spillTrainSamples = false;
+
+    // Number of train rows lemmatized together in streaming mode
+    private static final int STREAMING_BATCH_SIZE = 4096;
+
+    // Worker pools for lemmatizeColumn, created on first use and kept for the
+    // rest of the run, one per parallelism. Their threads are daemons, so they
+    // do not keep the JVM alive.
+    private static final Map<Integer, ForkJoinPool> LEMMATIZE_POOLS = new ConcurrentHashMap<>();
+
+    // Describes the preprocessing settings that affect the trained model. Stored
+    // with the model so that changing them triggers a retrain, see ModelStore.
+    public static String configuration() {
+        return "trainFraction=" + TRAIN_FRACTION + ",streaming=" + streamingIngestion
+                + ",fastLemmas=" + LemmatizationEngine.isFastPath() + ",dropDuplicates=" + dropDuplicates
+                + ",dropNearDuplicates=" + dropNearDuplicates;
+    }
+
     // Reads data from a CSV file and returns it as a formatted data frame.
     // Throws IOException if the file path does not lead to a .csv file
     // tablesaw API is used throughout for data frame management.
@@ -69,18 +143,23 @@ public class Preprocessing {
         return Table.read().csv(file);
     }
 
+    // Reads only the given columns of a CSV file into a data frame. The other
+    // columns are skipped by the parser, so their values are never parsed,
+    // type checked or stored. Throws IOException if the file path does not
+    // lead to a .csv file.
+    public static Table readCSV(String filePath, String... columnNames) throws IOException {
+        Set<String> retained = new HashSet<>(Arrays.asList(columnNames));
+        CsvReadOptions options = CsvReadOptions.builder(new File(filePath))
+                .columnTypesPartial(name -> retained.contains(name) ? Optional.empty() : Optional.of(ColumnType.SKIP))
+                .build();
+        return Table.read().csv(options);
+    }
+
     // Cleans a String by removing redundant characters, white space and emoji.
+    // Gives the same result as mapping the lambda functions above to the
+    // string one by one and making it lowercase, in a single pass.
     public static String preprocessString(String text) {
-
-        // Map lambda functions to string and make the string lowercase.
-        text = lambdaWhitespace.removeWhitespace(text);
-        text = lambdaEmoji.removeEmoji(text);
-        text = lambdaMentions.removeMentions(text);
-        text = lambdaLinks.removeLinks(text);
-        text = lambdaSpecial.removeSpecialChar(text);
-        text = text.toLowerCase();
-
-        return text;
+        return TextNormalizer.normalize(text);
     }
 
     // Cleans a String column of the data frame by removing redundant characters,
@@ -90,14 +169,15 @@ public class Preprocessing {
         if (!dataFrame.containsColumn(columnName))
             throw new IllegalArgumentException("Column does not exist in data frame.");
 
-        // Map lambda functions to column one by one and turn column strings to lower case
-        StringColumn cleanedColumn = dataFrame.column(columnName).asStringColumn();
-        cleanedColumn = cleanedColumn.map(lambdaWhitespace::removeWhitespace, StringColumn::create);
-        cleanedColumn = cleanedColumn.map(lambdaEmoji::removeEmoji, StringColumn::create);
-        cleanedColumn = cleanedColumn.map(lambdaMentions::removeMentions, StringColumn::create);
-        cleanedColumn = cleanedColumn.map(lambdaLinks::removeLinks, StringColumn::create);
-        cleanedColumn = cleanedColumn.map(lambdaSpecial::removeSpecialChar, StringColumn::create);
-        cleanedColumn = cleanedColumn.lowerCase().setName(columnName);
+        // Clean every cell once, straight into a pre-sized output column, so no
+        // intermediate column is created per cleaning step
+        StringColumn column = dataFrame.column(columnName).asStringColumn();
+        int size = column.size();
+        StringColumn cleanedColumn = StringColumn.create(columnName, size);
+        for (int i = 0; i < size; i++) {
+            if (!column.isMissing(i))
+                cleanedColumn.set(i, TextNormalizer.normalize(column.get(i)));
+        }
 
         // Replace old column with the cleaned one
         dataFrame.removeColumns(columnName);
@@ -106,20 +186,11 @@ public class Preprocessing {
 
     // Replaces words in a String with their simple dictionary form using
     // Stanford CoreNLP's lemmatization API. Returns lemmatized String.
+    // The CoreNLP models are loaded once and shared, see LemmatizationEngine.
     // Source:
     // https://stanfordnlp.github.io/CoreNLP/lemma.html
     public static String lemmatizeString(String str) {
-        Properties properties = new Properties();
-        properties.setProperty("annotators", "tokenize, ssplit, pos, lemma");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(properties);
-        CoreDocument document = new CoreDocument(str);
-        pipeline.annotate(document);
-        StringBuilder builder = new StringBuilder();
-        for (CoreLabel token : document.tokens()) {
-            String word = token.lemma() + " ";
-            builder.append(word);
-        }
-        return builder.toString();
+        return LemmatizationEngine.getInstance().lemmatize(str);
     }
 
     // Lemmatizes a String column of a data frame. Throws IllegalArgumentException
@@ -139,6 +210,95 @@ public class Preprocessing {
         dataFrame.replaceColumn(columnName, column);
     }
 
+    // Lemmatizes a String column of a data frame on a pool of numThreads
+    // workers, reused across calls. The column is cut into chunks that are annotated concurrently
+    // and written back by row index, so the row order is preserved. Throws
+    // IllegalArgumentException if provided column does not exist in the data
+    // frame or numThreads is not positive.
+    public static void lemmatizeColumn(Table dataFrame, String columnName, int numThreads) {
+        if (!dataFrame.containsColumn(columnName))
+            throw new IllegalArgumentException("Column does not exist in data frame.");
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+
+        StringColumn column = dataFrame.column(columnName).asStringColumn();
+        int size = column.size();
+        String[] lemmas = new String[size];
+
+        // A few chunks per worker keeps the pool busy when some chunks hold
+        // longer tweets than others
+        int chunkSize = Math.max(1, (size + numThreads * 4 - 1) / (numThreads * 4));
+        LemmatizationEngine engine = LemmatizationEngine.getInstance();
+        ForkJoinPool pool = LEMMATIZE_POOLS.computeIfAbsent(numThreads, ForkJoinPool::new);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            int from = start;
+            int to = Math.min(size, start + chunkSize);
+            tasks.add(pool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    lemmas[i] = column.isMissing(i) ? column.get(i) : engine.lemmatize(column.get(i));
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        dataFrame.replaceColumn(columnName, StringColumn.create(columnName, lemmas));
+    }
+
+    // Drops every row whose value in columnName already appeared in an
+    // earlier row and returns the remaining rows, in their original order.
+    // Values are compared by the 64 bit fingerprints of their duplicateKey,
+    // kept in a LongHashSet. Throws IllegalArgumentException if provided
+    // column does not exist in the data frame.
+    public static Table dropDuplicateRows(Table dataFrame, String columnName) {
+        if (!dataFrame.containsColumn(columnName))
+            throw new IllegalArgumentException("Column does not exist in data frame.");
+
+        Column<?> column = dataFrame.column(columnName);
+        LongHashSet seen = new LongHashSet(column.size());
+        Selection unique = new BitmapBackedSelection();
+        for (int i = 0; i < column.size(); i++) {
+            if (seen.add(Fingerprints.of(duplicateKey(column.getString(i)))))
+                unique.add(i);
+        }
+        return dataFrame.where(unique);
+    }
+
+    // Returns the form of a cleaned train row, ie. a tag followed by the
+    // tweet, under which it is compared for duplicates: the row without the
+    // "rt" retweet markers at the start of the tweet. Cleaning already drops
+    // the @user mention of "RT @user: ...", so a retweet then reads like the
+    // tweet it quotes, eg. "positive rt bitcoin is up" and "positive bitcoin
+    // is up". Retweets cut short by Twitter, which end in an ellipsis, only
+    // match other retweets of the same tweet.
+    static String duplicateKey(String row) {
+        int tweetStart = row.indexOf(' ') + 1;
+        if (tweetStart == 0) return row;
+        int start = tweetStart;
+        while (row.startsWith("rt ", start)) start += 3;
+        return start == tweetStart ? row : row.substring(0, tweetStart) + row.substring(start);
+    }
+
+    // Clusters the rows of the data frame by near duplicate values in
+    // columnName in a single pass and returns the first row of every cluster,
+    // in the original order. Throws IllegalArgumentException if provided
+    // column does not exist in the data frame.
+    public static Table dropNearDuplicateRows(Table dataFrame, String columnName) {
+        if (!dataFrame.containsColumn(columnName))
+            throw new IllegalArgumentException("Column does not exist in data frame.");
+
+        Column<?> column = dataFrame.column(columnName);
+        NearDuplicateDetector detector = new NearDuplicateDetector();
+        Selection representatives = new BitmapBackedSelection();
+        for (int i = 0; i < column.size(); i++) {
+            if (detector.assign(column.getString(i), i) == i)
+                representatives.add(i);
+        }
+        return dataFrame.where(representatives);
+    }
+
     // Turns Tag column into a clean form. Throws IllegalArgumentException if
     // provided column does not exist in the data frame.
     public static void prepareTag(Table dataFrame, String columnName) {
@@ -180,98 +340,287 @@ public class Preprocessing {
         return new Table[]{train, test};
     }
 
-    // Outputs the training data frame to a text file.
+    // Outputs the training data frame to a text file. Rows are streamed to
+    // the file one by one through a LineWriter, so memory use does not depend
+    // on the number of rows.
     public static void trainToTXT(Table dataFrame, String columnName, String fileName) {
-        StringBuilder sb = new StringBuilder();
-
-        // Adds non-empty row entries to StringBuilder, one by one
-        sb.append(dataFrame.column(columnName).asStringColumn().get(0));
-        for (int i = 1; i < dataFrame.column(columnName).size(); i++) {
-            String str = dataFrame.column(columnName).asStringColumn().get(i);
-            if (!str.equals("neutral ") && !str.equals("positive ") && !str.equals("negative "))
-                sb.append("\n" + dataFrame.column(columnName).asStringColumn().get(i));
+        StringColumn column = dataFrame.column(columnName).asStringColumn();
+
+        // Writes non-empty row entries to the text file, one by one
+        try (LineWriter out = new LineWriter(dataDirectory + "/" + fileName)) {
+            if (!column.isEmpty())
+                out.write(column.get(0));
+            for (int i = 1; i < column.size(); i++) {
+                String str = column.get(i);
+                if (!str.equals("neutral ") && !str.equals("positive ") && !str.equals("negative ")) {
+                    out.newLine();
+                    out.write(str);
+                }
+            }
+            out.write(System.lineSeparator());
+        } catch (IOException exception) {
+            exception.printStackTrace();
         }
+    }
 
-        // Print StringBuilder to text file
-        try (PrintWriter out = new PrintWriter("src/main/" + fileName)) {
-            out.println(sb);
-        } catch (FileNotFoundException exception) {
-            exception.printStackTrace();
+    // Turns the rows of a lemmatized training data frame into training
+    // samples, the tag being the first word of each row. Gives the same
+    // samples as writing the rows with trainToTXT and reading them back with
+    // DocumentSampleStream, without the round trip through the file. Rows
+    // without text after the tag are skipped.
+    // Source:
+    // https://opennlp.apache.org/docs/1.9.4/manual/opennlp.html#tools.doccat.training
+    public static List<DocumentSample> trainToSamples(Table dataFrame, String columnName) {
+        if (!dataFrame.containsColumn(columnName))
+            throw new IllegalArgumentException("Column does not exist in data frame.");
+
+        Column<?> column = dataFrame.column(columnName);
+        List<DocumentSample> samples = new ArrayList<>(column.size());
+        for (int i = 0; i < column.size(); i++) {
+            DocumentSample sample = toSample(column.getString(i));
+            if (sample != null) samples.add(sample);
+        }
+        return samples;
+    }
+
+    // Same as trainToSamples, but the samples are written to a temporary
+    // file as they are made, so they never all sit on the heap. Throws
+    // IOException if the file cannot be written.
+    public static DiskSampleStream trainToDisk(Table dataFrame, String columnName) throws IOException {
+        if (!dataFrame.containsColumn(columnName))
+            throw new IllegalArgumentException("Column does not exist in data frame.");
+
+        Column<?> column = dataFrame.column(columnName);
+        DiskSampleStream samples = new DiskSampleStream();
+        for (int i = 0; i < column.size(); i++) {
+            DocumentSample sample = toSample(column.getString(i));
+            if (sample != null) samples.add(sample);
         }
+        return samples;
+    }
+
+    // Splits a lemmatized train row into its tag and its tokens. Returns null
+    // if there is no text after the tag.
+    private static DocumentSample toSample(String row) {
+        String[] tokens = WhitespaceTokenizer.INSTANCE.tokenize(row);
+        if (tokens.length < 2) return null;
+        return new DocumentSample(tokens[0], Arrays.copyOfRange(tokens, 1, tokens.length));
+    }
+
+    // Opens a text file written by trainToTXT as a stream of training samples.
+    // Throws IOException if the file cannot be read.
+    public static ObjectStream<DocumentSample> trainFileSamples(String filePath) throws IOException {
+        InputStreamFactory inputFactory = new MarkableFileInputStreamFactory(new File(filePath));
+        ObjectStream<String> lineStream = new PlainTextByLineStream(inputFactory, "UTF-8");
+        return new DocumentSampleStream(lineStream);
     }
 
     // Outputs the test strings and their corresponding tags to separate
     // text files, in order to simulate real testing conditions. Text
     // file with one message per line is a reasonable "real world" input.
+    // Each test string and its tag are streamed to the two files together,
+    // row by row.
     public static void testToTXT(Table dataFrame, String columnTest, String columnTag, String fileTest, String fileTag) {
-        StringBuilder sbTest = new StringBuilder();
-        StringBuilder sbTag = new StringBuilder();
-
-        // Remove whitespace and line breaks so that the strings will be one
-        // per line
-        StringColumn newColumn =
-                dataFrame.column(columnTest).asStringColumn().map(lambdaWhitespace::removeWhitespace, StringColumn::create);
-        dataFrame.removeColumns(columnTest);
-        dataFrame.addColumns(newColumn);
-
-        // Adds non-empty row entries to StringBuilders, one by one
-        sbTest.append(dataFrame.column(columnTest).asStringColumn().get(0));
-        sbTag.append(dataFrame.column(columnTag).asStringColumn().get(0));
-        for (int i = 1; i < dataFrame.column(columnTest).size(); i++) {
-            if (!dataFrame.column(columnTest).asStringColumn().get(i).equals("  ")) {
-                sbTest.append("\n" + dataFrame.column(columnTest).asStringColumn().get(i));
-                sbTag.append("\n" + dataFrame.column(columnTag).asStringColumn().get(i));
-            }
-        }
+        Column<?> testColumn = dataFrame.column(columnTest);
+        Column<?> tagColumn = dataFrame.column(columnTag);
 
-        // Prints test data and tags in separate text files
-        try (PrintWriter out = new PrintWriter("src/main/" + fileTest)) {
-            out.println(sbTest);
-        } catch (FileNotFoundException exception) {
-            exception.printStackTrace();
-        }
-        try (PrintWriter out = new PrintWriter("src/main/" + fileTag)) {
-            out.println(sbTag);
-        } catch (FileNotFoundException exception) {
+        try (PairedLineWriter out = new PairedLineWriter(dataDirectory + "/" + fileTest, dataDirectory + "/" + fileTag)) {
+            for (int i = 0; i < testColumn.size(); i++) {
+
+                // Remove whitespace and line breaks so that the strings will be one
+                // per line
+                String test = lambdaWhitespace.removeWhitespace(testColumn.getString(i));
+
+                // Writes non-empty row entries, the first row is always written
+                if (i == 0 || !test.equals("  "))
+                    out.writePair(test, tagColumn.getString(i));
+            }
+        } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
     // Preprocesses the first numTweets bitcoin tweets csv file to be ready
-    // for NLP model training and testing.
-    public static void Preprocess(String filePath, int numTweets) throws IOException {
-        System.out.println("Reading input data...");
-        Table dataFrame = readCSV(filePath);
-        dataFrame = dataFrame.dropRowsWithMissingValues();
+    // for NLP model training and testing. Returns the training samples, held
+    // in memory, and writes the test set to text files. In streaming mode the
+    // train set goes to trainset.txt, so its size is not bounded by memory,
+    // and the returned samples are read back from there. With
+    // spillTrainSamples, the samples are kept in a temporary file instead.
+    public static ObjectStream<DocumentSample> Preprocess(String filePath, int numTweets) throws IOException {
+        if (streamingIngestion) {
+            PreprocessStreaming(filePath, numTweets);
+            return trainFileSamples(dataDirectory + "/trainset.txt");
+        }
 
-        // Only keep relevant columns
-        dataFrame.retainColumns("Tweet", "Tag");
-        if (numTweets > dataFrame.column("Tweet").size())
-            throw new IllegalArgumentException("Input is larger than length of data frame");
-        dataFrame = dataFrame.first(numTweets);
-        prepareTag(dataFrame, "Tag");
+        // Every stage is timed, see MetricsRegistry
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+        System.out.println("Reading input data...");
+        Table dataFrame;
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.read").time()) {
+            // Only read relevant columns
+            dataFrame = readCSV(filePath, "Tweet", "Tag");
+            dataFrame = dataFrame.dropRowsWithMissingValues();
+            if (numTweets > dataFrame.column("Tweet").size())
+                throw new IllegalArgumentException("Input is larger than length of data frame");
+            dataFrame = dataFrame.first(numTweets);
+            prepareTag(dataFrame, "Tag");
+        }
+        metrics.counter("preprocess.rows").add(dataFrame.rowCount());
 
         // Create train and test data frames
         System.out.println("Splitting data into train and test sets...");
-        Table[] trainTest = trainTestSplit(dataFrame, "Tweet", "Tag", 0.8);
-        Table train = trainTest[0];
-        Table test = trainTest[1];
+        Table train;
+        Table test;
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.split").time()) {
+            Table[] trainTest = trainTestSplit(dataFrame, "Tweet", "Tag", TRAIN_FRACTION);
+            train = trainTest[0];
+            test = trainTest[1];
+        }
 
         // Preprocess only the train data to make learning easier for
         // the model! We want the test data to be similar to a real
         // world input
         System.out.println("Preprocessing train data...");
-        preprocessColumn(train, "Tweet");
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.clean").time()) {
+            preprocessColumn(train, "Tweet");
+        }
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.dedup").time()) {
+            if (dropDuplicates) {
+                int before = train.rowCount();
+                train = dropDuplicateRows(train, "Tweet");
+                metrics.counter("preprocess.duplicates").add(before - train.rowCount());
+                System.out.println("Removed " + (before - train.rowCount()) + " duplicate rows...");
+            }
+            if (dropNearDuplicates) {
+                int before = train.rowCount();
+                train = dropNearDuplicateRows(train, "Tweet");
+                metrics.counter("preprocess.nearDuplicates").add(before - train.rowCount());
+                System.out.println("Removed " + (before - train.rowCount()) + " near duplicate rows...");
+            }
+        }
         System.out.println("Lemmatizing train data...");
         System.out.println("(This may take a while)");
-        lemmatizeColumn(train, "Tweet");
-        train.dropRowsWithMissingValues();
-        test.dropRowsWithMissingValues();
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.lemmatize").time()) {
+            lemmatizeColumn(train, "Tweet", Runtime.getRuntime().availableProcessors());
+        }
 
         // Output the preprocessed data to text files
         System.out.println("Creating input text files...");
-        trainToTXT(train, "Tweet", "trainset.txt");
-        testToTXT(test, "Tweet", "Tag", "testset.txt", "testsettag.txt");
+        ObjectStream<DocumentSample> samples;
+        long trainRows;
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.write").time()) {
+            if (spillTrainSamples) {
+                DiskSampleStream spilled = trainToDisk(train, "Tweet");
+                trainRows = spilled.size();
+                samples = spilled;
+            } else {
+                List<DocumentSample> list = trainToSamples(train, "Tweet");
+                trainRows = list.size();
+                samples = new CollectionObjectStream<>(list);
+            }
+            if (exportTrainFile)
+                trainToTXT(train, "Tweet", "trainset.txt");
+            testToTXT(test, "Tweet", "Tag", "testset.txt", "testsettag.txt");
+        }
+        metrics.counter("preprocess.trainRows").add(trainRows);
+        metrics.counter("preprocess.testRows").add(test.rowCount());
+        return samples;
+    }
+
+    // Same as Preprocess, but the csv file is parsed row by row and only the
+    // Tweet and Tag columns are kept, so memory use does not grow with the
+    // size of the file. Each row goes to the train set with probability
+    // TRAIN_FRACTION. Train rows are cleaned and lemmatized in fixed size
+    // batches, test rows are written out as they are read. Throws
+    // IllegalArgumentException if the file has fewer than numTweets complete
+    // rows.
+    public static void PreprocessStreaming(String filePath, int numTweets) throws IOException {
+        System.out.println("Streaming input data...");
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        MetricsRegistry.Timer readTimer = metrics.timer("preprocess.read");
+        MetricsRegistry.Timer cleanTimer = metrics.timer("preprocess.clean");
+        Random random = new Random();
+        List<String> batch = new ArrayList<>(STREAMING_BATCH_SIZE);
+        int rows = 0;
+        LongHashSet seen = new LongHashSet();
+        int duplicates = 0;
+        NearDuplicateDetector nearDuplicates = dropNearDuplicates ? new NearDuplicateDetector() : null;
+
+        try (CsvRowReader reader = new CsvRowReader(
+                Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8), "Tweet", "Tag");
+             LineWriter trainOut = new LineWriter(dataDirectory + "/trainset.txt");
+             PairedLineWriter testOut = new PairedLineWriter(dataDirectory + "/testset.txt",
+                     dataDirectory + "/testsettag.txt")) {
+            while (rows < numTweets) {
+                long readStart = System.nanoTime();
+                String[] row = reader.next();
+                readTimer.record(System.nanoTime() - readStart);
+                if (row == null)
+                    break;
+                if (reader.lastRowHasMissingValues())
+                    continue;
+                rows++;
+
+                // Same tag clean up as prepareTag
+                String tag = row[1].substring(2, row[1].length() - 2);
+                tag = tag.isEmpty() ? tag : Character.toUpperCase(tag.charAt(0)) + tag.substring(1);
+
+                if (random.nextDouble() < TRAIN_FRACTION) {
+                    long start = System.nanoTime();
+                    String trainString = preprocessString(tag + " " + row[0]);
+                    cleanTimer.record(System.nanoTime() - start);
+                    if (dropDuplicates && !seen.add(Fingerprints.of(duplicateKey(trainString)))) {
+                        duplicates++;
+                        continue;
+                    }
+                    if (nearDuplicates != null && nearDuplicates.assign(trainString, rows) != rows)
+                        continue;
+                    batch.add(trainString);
+                    if (batch.size() == STREAMING_BATCH_SIZE) {
+                        writeTrainBatch(batch, trainOut);
+                        batch.clear();
+                    }
+                } else {
+                    String tweet = lambdaWhitespace.removeWhitespace(row[0]);
+                    if (!tweet.equals("  ")) {
+                        testOut.writePair(tweet, tag);
+                        metrics.counter("preprocess.testRows").increment();
+                    }
+                }
+            }
+            writeTrainBatch(batch, trainOut);
+        }
+        metrics.counter("preprocess.rows").add(rows);
+        metrics.counter("preprocess.duplicates").add(duplicates);
+        if (nearDuplicates != null)
+            metrics.counter("preprocess.nearDuplicates").add(nearDuplicates.getNumNearDuplicates());
+        if (dropDuplicates)
+            System.out.println("Removed " + duplicates + " duplicate rows...");
+        if (nearDuplicates != null)
+            System.out.println("Removed " + nearDuplicates.getNumNearDuplicates() + " near duplicate rows...");
+
+        if (rows < numTweets)
+            throw new IllegalArgumentException("Input is larger than length of data frame");
+    }
+
+    // Lemmatizes a batch of cleaned train rows in parallel and writes the
+    // rows that still have text after the tag, like trainToTXT.
+    private static void writeTrainBatch(List<String> batch, LineWriter out) throws IOException {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        LemmatizationEngine engine = LemmatizationEngine.getInstance();
+        List<String> lemmas;
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.lemmatize").time()) {
+            lemmas = batch.parallelStream().map(engine::lemmatize).collect(Collectors.toList());
+        }
+        try (MetricsRegistry.Timer.Context context = metrics.timer("preprocess.write").time()) {
+            for (String str : lemmas) {
+                if (!str.equals("neutral ") && !str.equals("positive ") && !str.equals("negative ")) {
+                    out.writeLine(str);
+                    metrics.counter("preprocess.trainRows").increment();
+                }
+            }
+        }
     }
 
     // Testing preprocessColumn and lemmatizeColumn
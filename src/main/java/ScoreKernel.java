@@ -0,0 +1,18 @@
+// Adds weight rows into class scores and turns the scores into
+// probabilities, for CompiledDoccatModel. A kernel is made for a number of
+// outcomes, and weight rows and score buffers are padded to getStride
+// doubles, the padding of a score buffer being negative infinity so it adds
+// nothing to the normalization. The scalar code lives in CompiledDoccatModel
+// itself, see VectorScoreKernel in src/vector/java for the SIMD one.
+interface ScoreKernel {
+
+    // Number of doubles in a weight row and in a score buffer, at least the
+    // number of outcomes
+    int getStride();
+
+    // Adds the row of weights starting at weights[row] to scores
+    void add(double[] weights, int row, double[] scores);
+
+    // Replaces scores by exp(scores / scale), normalized to sum to 1
+    void softmax(double[] scores, double scale);
+}
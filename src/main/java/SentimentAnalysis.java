@@ -6,6 +6,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class SentimentAnalysis {
     private static ArrayList<String> tags; // ArrayList of correct tags (sentiments).
@@ -13,7 +14,15 @@ public class SentimentAnalysis {
     private static ArrayList<String> testArray; // ArrayList of test Tweets.
 
     private static DoccatModel model; // Sentiment analysis model
-    private static DocumentCategorizerME categorizer; // Sentiment catagorizer
+    private static SentimentClassifier classifier; // Thread-safe sentiment catagorizer
+
+    // Algorithm, iterations, cutoff and threads used by trainModel. Maxent on
+    // every core by default.
+    public static TrainingConfig trainingConfig = new TrainingConfig();
+
+    // When set, the classifier scores tweets with the Vector API when it is
+    // available, see CompiledDoccatModel
+    public static boolean vectorScoring = false;
 
     // Possible testing results in [TruthPrediction] format. We define a testing
     // result as a (True Sentiment, Predicted Sentiment) pair.
@@ -32,23 +41,36 @@ public class SentimentAnalysis {
     // https://stackoverflow.com/questions/42908442/opennlp-categorize-content-return-always-first-category
     public static void trainModel() {
         try {
-            System.out.println("Training model...");
-            // Set up input stream
-            InputStreamFactory inputFactory = new MarkableFileInputStreamFactory(new File("src/main/trainset.txt"));
-            ObjectStream<String> lineStream = new PlainTextByLineStream(inputFactory, "UTF-8");
-            ObjectStream<DocumentSample> sampleStream = new DocumentSampleStream(lineStream);
-
-            // Create a sentiment model and train it on the trainset.txt file
-            model = DocumentCategorizerME.train("en", sampleStream, TrainingParameters.defaultParams(), new DoccatFactory());
-            categorizer = new DocumentCategorizerME(model);
-
+            trainModel(Preprocessing.trainFileSamples(Preprocessing.dataDirectory + "/trainset.txt"));
+        } catch (IOException exception) {
+            // Failed to read training data, training failed
+            exception.printStackTrace();
+        }
+    }
 
+    // Creates a NLP model and trains it on the given samples, eg. the ones
+    // returned by Preprocessing.Preprocess, with the settings of
+    // trainingConfig.
+    public static void trainModel(ObjectStream<DocumentSample> sampleStream) {
+        try {
+            System.out.println("Training model (" + trainingConfig + ")...");
+            // Create a sentiment model and train it on the samples
+            try (MetricsRegistry.Timer.Context context = MetricsRegistry.getInstance().timer("train").time()) {
+                model = DocumentCategorizerME.train("en", sampleStream, trainingConfig.toParameters(),
+                        new DoccatFactory());
+            }
+            classifier = new SentimentClassifier(model, vectorScoring);
         } catch (IOException exception) {
             // Failed to read or parse training data, training failed
             exception.printStackTrace();
         }
     }
 
+    // Returns the model trained or loaded last, null if there is none
+    public static DoccatModel getModel() {
+        return model;
+    }
+
 
     /*___________________________________________________________________________________________*/
     // FEATURE 3: NLP model testing on Bitcoin tweets using OpenNLP library
@@ -96,32 +118,27 @@ public class SentimentAnalysis {
     }
 
     // Fetches the test data. Tests the trained NLP model on it
-    // and stores the results in an ArrayList.
+    // and stores the results in an ArrayList. Reading, preprocessing,
+    // lemmatization and classification run in parallel stages, see
+    // EvaluationPipeline.
     public static void testModel() throws FileNotFoundException {
         System.out.println("Testing model...");
-        createArrays();
-        String[] tests = testString();
-        resultTags = new ArrayList<String>();
-
-        // Iterate through test strings and assign a category
-        for (int i = 0; i < tests.length; i++) {
-            double[] outcomes = categorizer.categorize(tests[i].split(" "));
-            String category = categorizer.getBestCategory(outcomes);
-
-            // Capitalizes sentiment
-            char first = Character.toUpperCase(category.charAt(0));
-            String sentiment = first + category.substring(1);
-
-            resultTags.add(sentiment);
+        EvaluationPipeline.Result result;
+        try (MetricsRegistry.Timer.Context context = MetricsRegistry.getInstance().timer("test").time()) {
+            result = EvaluationPipeline.run(Preprocessing.dataDirectory + "/testset.txt",
+                    Preprocessing.dataDirectory + "/testsettag.txt",
+                    classifier, Runtime.getRuntime().availableProcessors());
         }
-
+        testArray = result.tests;
+        tags = result.tags;
+        resultTags = result.predictions;
     }
 
     // Parses the testset.txt and testsettag.txt files and puts each line
     // of these files into the corresponding ArrayList.
     public static void createArrays() throws FileNotFoundException {
-        File testFile = new File("src/main/testset.txt");
-        File tagFile = new File("src/main/testsettag.txt");
+        File testFile = new File(Preprocessing.dataDirectory, "testset.txt");
+        File tagFile = new File(Preprocessing.dataDirectory, "testsettag.txt");
         Scanner testScan = new Scanner(testFile);
         Scanner tagScan = new Scanner(tagFile);
         testArray = new ArrayList<String>();
@@ -189,18 +206,8 @@ public class SentimentAnalysis {
             input = scan.nextLine();
             if (input.equals("EXIT")) break;
 
-            // Preprocess the line
-            input = Preprocessing.preprocessString(input);
-            input = Preprocessing.lemmatizeString(input);
-
-            // Assign the line a sentiment
-            double[] outcomes = categorizer.categorize(input.split(" "));
-            String category = categorizer.getBestCategory(outcomes);
-
-            // Capitalize tag
-            char first = Character.toUpperCase(category.charAt(0));
-            category = first + category.substring(1);
-            System.out.println(category);
+            // Preprocess the line and assign it a sentiment
+            System.out.println(classifier.classify(input));
         }
     }
 
@@ -208,8 +215,96 @@ public class SentimentAnalysis {
     // a Confusion Matrix and an accuracy score.
     public static void main(String[] args) throws IOException {
         System.out.println("Do not worry about the red logger implementation message...");
-        Preprocessing.Preprocess("src/main/bitcointweets.csv", Integer.parseInt(args[0]));
-        trainModel();
+        String filePath = "src/main/bitcointweets.csv";
+        int numTweets = Integer.parseInt(args[0]);
+        boolean metrics = false;
+        int metricsPort = -1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--streaming"))
+                Preprocessing.streamingIngestion = true;
+            else if (args[i].equals("--fast-lemmas"))
+                LemmatizationEngine.setFastPath(true);
+            else if (args[i].equals("--dedup"))
+                Preprocessing.dropDuplicates = true;
+            else if (args[i].equals("--near-dedup"))
+                Preprocessing.dropNearDuplicates = true;
+            else if (args[i].equals("--export-trainset"))
+                Preprocessing.exportTrainFile = true;
+            else if (args[i].equals("--spill-samples"))
+                Preprocessing.spillTrainSamples = true;
+            else if (args[i].equals("--vector-scoring"))
+                vectorScoring = true;
+            else if (args[i].equals("--metrics"))
+                metrics = true;
+            else if (args[i].startsWith("--metrics-port="))
+                metricsPort = Integer.parseInt(args[i].substring("--metrics-port=".length()));
+            else if (args[i].startsWith("--algorithm=") || args[i].startsWith("--iterations=")
+                    || args[i].startsWith("--cutoff=") || args[i].startsWith("--threads=")
+                    || args[i].startsWith("--indexer="))
+                trainingConfig.set(args[i].substring(2));
+            else
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+
+        MetricsRegistry.enabled = metrics || metricsPort >= 0;
+        // Log the metrics of every stage periodically and publish them over JMX
+        if (metrics) {
+            MetricsRegistry.getInstance().startLogging(10, TimeUnit.SECONDS);
+            MetricsRegistry.getInstance().registerMBean();
+        }
+
+        // Reuse the stored model if it was trained on the same data with the
+        // same settings, and the test set files were written by the same
+        // preprocessing, otherwise preprocess the data and train a new one
+        TrainingParameters parameters = trainingConfig.toParameters();
+        ModelStore store = new ModelStore(Preprocessing.dataDirectory + "/sentiment.bin");
+        String preprocessingFingerprint = store.preprocessingFingerprint(filePath, numTweets);
+        String fingerprint = store.fingerprint(filePath, numTweets, parameters);
+        String testInfoPath = Preprocessing.dataDirectory + "/testset.properties";
+        model = store.load(fingerprint);
+        if (model != null && preprocessingFingerprint.equals(ModelStore.readFingerprint(testInfoPath))
+                && new File(Preprocessing.dataDirectory, "testset.txt").isFile()
+                && new File(Preprocessing.dataDirectory, "testsettag.txt").isFile()) {
+            System.out.println("Loaded stored model...");
+            classifier = new SentimentClassifier(model, vectorScoring);
+        } else {
+            // Forget the test set fingerprint until a model trained on the
+            // new train set is stored
+            model = null;
+            new File(testInfoPath).delete();
+
+            // The token dictionary for the fast lemmatization path is kept
+            // between runs, so it keeps learning from every CoreNLP pass
+            File dictionaryFile = new File("src/main/lemmas.tsv");
+            if (LemmatizationEngine.isFastPath() && dictionaryFile.isFile())
+                LemmatizationEngine.getInstance().getDictionary().load(dictionaryFile.getPath());
+            ObjectStream<DocumentSample> samples;
+            try (MetricsRegistry.Timer.Context context = MetricsRegistry.getInstance().timer("preprocess").time()) {
+                samples = Preprocessing.Preprocess(filePath, numTweets);
+            }
+            if (LemmatizationEngine.isFastPath())
+                LemmatizationEngine.getInstance().getDictionary().save(dictionaryFile.getPath());
+            trainModel(samples);
+            samples.close();
+            if (model != null) {
+                store.save(model, fingerprint, filePath, numTweets, parameters);
+                ModelStore.writeFingerprint(testInfoPath, preprocessingFingerprint);
+            }
+        }
+        // Publish the classifier over JMX and, if asked for, over HTTP for the
+        // rest of the run. The model is identified by its fingerprint.
+        String modelVersion = fingerprint.substring(0, 12);
+        ClassifierMonitor monitor = null;
+        MetricsHttpServer httpServer = null;
+        if (metrics) {
+            monitor = new ClassifierMonitor(modelVersion);
+            monitor.register();
+        }
+        if (metricsPort >= 0) {
+            httpServer = new MetricsHttpServer(metricsPort, modelVersion);
+            System.out.println("Serving metrics on http://127.0.0.1:" + httpServer.getPort() + "/metrics");
+        }
+
         testModel();
         int[][] mat = createResult();
         int total = 0;
@@ -224,6 +319,15 @@ public class SentimentAnalysis {
                 "\nDiagonal entries are the counts of correct predictions for each tag.");
         printMatrix(mat);
         System.out.println("Accuracy Score: " + ((double) correct / total));
-        individualSentiment();
+        if (metrics) {
+            MetricsRegistry.getInstance().stopLogging();
+            System.out.println(MetricsRegistry.getInstance().report());
+        }
+        try {
+            individualSentiment();
+        } finally {
+            if (httpServer != null) httpServer.stop();
+            if (monitor != null) monitor.close();
+        }
     }
 }
@@ -0,0 +1,96 @@
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Thread-safe sentiment classifier around a trained DoccatModel. Maxent and
+// perceptron models are compiled into a CompiledDoccatModel, which gives the
+// same sentiments without allocating, every thread scoring into its own
+// buffer. Other models go through DocumentCategorizerME, which keeps per-call
+// state, so every thread gets its own categorizer on first use.
+// Source:
+// https://opennlp.apache.org/docs/1.9.4/manual/opennlp.html#tools.doccat.classifying
+public class SentimentClassifier {
+
+    private static final MetricsRegistry.Timer CLASSIFY_TIMER = MetricsRegistry.getInstance().timer("classify");
+    private static final MetricsRegistry.Timer CATEGORIZE_TIMER =
+            MetricsRegistry.getInstance().timer("classify.categorize");
+
+    private final DoccatModel model;
+    private final ThreadLocal<DocumentCategorizerME> categorizers;
+    private final CompiledDoccatModel compiled; // null if the model cannot be compiled
+    private final ThreadLocal<double[]> probabilities;
+    private final String[] sentiments; // Capitalized outcomes of the compiled model
+
+    public SentimentClassifier(DoccatModel model) {
+        this(model, false);
+    }
+
+    // With vectorScoring set, the compiled model adds up scores with the
+    // Vector API when it is available, see CompiledDoccatModel
+    public SentimentClassifier(DoccatModel model, boolean vectorScoring) {
+        this.model = model;
+        this.categorizers = ThreadLocal.withInitial(() -> new DocumentCategorizerME(model));
+        CompiledDoccatModel compiledModel;
+        try {
+            compiledModel = CompiledDoccatModel.compile(model, vectorScoring);
+        } catch (IllegalArgumentException exception) {
+            compiledModel = null;
+        }
+        this.compiled = compiledModel;
+        if (compiled != null) {
+            int numOutcomes = compiled.getNumOutcomes();
+            int scoreLength = compiled.getScoreLength();
+            probabilities = ThreadLocal.withInitial(() -> new double[scoreLength]);
+            sentiments = new String[numOutcomes];
+            for (int i = 0; i < numOutcomes; i++) sentiments[i] = capitalize(compiled.getOutcome(i));
+        } else {
+            probabilities = null;
+            sentiments = null;
+        }
+    }
+
+    public DoccatModel getModel() {
+        return model;
+    }
+
+    // Returns the compiled model, null if tweets go through
+    // DocumentCategorizerME
+    public CompiledDoccatModel getCompiledModel() {
+        return compiled;
+    }
+
+    // Preprocesses and lemmatizes a raw tweet and returns its capitalized
+    // sentiment, ie. Positive, Neutral or Negative.
+    public String classify(String text) {
+        try (MetricsRegistry.Timer.Context context = CLASSIFY_TIMER.time()) {
+            String lemmas = Preprocessing.lemmatizeString(Preprocessing.preprocessString(text));
+            return categorize(lemmas);
+        }
+    }
+
+    // Classifies raw tweets concurrently and returns the sentiments in input
+    // order.
+    public List<String> classifyAll(List<String> texts) {
+        return texts.parallelStream().map(this::classify).collect(Collectors.toList());
+    }
+
+    // Returns the capitalized sentiment of an already preprocessed and
+    // lemmatized String.
+    public String categorize(String lemmas) {
+        try (MetricsRegistry.Timer.Context context = CATEGORIZE_TIMER.time()) {
+            if (compiled != null)
+                return sentiments[compiled.categorize(lemmas, probabilities.get())];
+            DocumentCategorizerME categorizer = categorizers.get();
+            double[] outcomes = categorizer.categorize(lemmas.split(" "));
+            return capitalize(categorizer.getBestCategory(outcomes));
+        }
+    }
+
+    // Capitalizes sentiment
+    static String capitalize(String category) {
+        char first = Character.toUpperCase(category.charAt(0));
+        return first + category.substring(1);
+    }
+}
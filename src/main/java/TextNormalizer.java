@@ -0,0 +1,245 @@
+import java.util.Locale;
+
+// Single pass replacement for the lambda chain in Preprocessing.preprocessString.
+// The chain trims and collapses whitespace, removes emoji, Twitter mentions,
+// links and special characters, then lower cases the result. Each step used to
+// compile a regular expression and allocate a new String. Here the steps are
+// replayed over one reusable per-thread buffer, and the only allocation per
+// call is the returned String. The output is character for character identical
+// to the chain, including its quirks (a single tab is dropped rather than turned
+// into a space, a link swallows everything up to the last space, etc.).
+public final class TextNormalizer {
+
+    // Character.getType categories kept by lambdaEmoji, ie. \p{L}, \p{N},
+    // \p{P} and \p{Z}
+    private static final int KEPT_TYPES =
+            1 << Character.UPPERCASE_LETTER | 1 << Character.LOWERCASE_LETTER
+                    | 1 << Character.TITLECASE_LETTER | 1 << Character.MODIFIER_LETTER
+                    | 1 << Character.OTHER_LETTER
+                    | 1 << Character.DECIMAL_DIGIT_NUMBER | 1 << Character.LETTER_NUMBER
+                    | 1 << Character.OTHER_NUMBER
+                    | 1 << Character.CONNECTOR_PUNCTUATION | 1 << Character.DASH_PUNCTUATION
+                    | 1 << Character.START_PUNCTUATION | 1 << Character.END_PUNCTUATION
+                    | 1 << Character.INITIAL_QUOTE_PUNCTUATION | 1 << Character.FINAL_QUOTE_PUNCTUATION
+                    | 1 << Character.OTHER_PUNCTUATION
+                    | 1 << Character.SPACE_SEPARATOR | 1 << Character.LINE_SEPARATOR
+                    | 1 << Character.PARAGRAPH_SEPARATOR;
+
+    // Reusable working buffers, one pair per thread so that columns can be
+    // cleaned concurrently.
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private static final class Buffers {
+        char[] work = new char[256];
+        char[] out = new char[512];
+
+        void ensureCapacity(int length) {
+            if (work.length < length) {
+                work = new char[Math.max(length, work.length * 2)];
+                out = new char[work.length * 2];
+            }
+        }
+    }
+
+    private TextNormalizer() {
+    }
+
+    // Cleans a String exactly like the lambdaWhitespace, lambdaEmoji,
+    // lambdaMentions, lambdaLinks and lambdaSpecial chain followed by
+    // toLowerCase.
+    public static String normalize(String text) {
+        Buffers buffers = BUFFERS.get();
+        buffers.ensureCapacity(text.length());
+        char[] buf = buffers.work;
+
+        int length = removeWhitespaceAndEmoji(text, buf);
+        length = removeMentions(buf, length);
+        length = removeLinks(buf, length);
+        return removeSpecialAndLowerCase(buf, length, buffers.out);
+    }
+
+    // lambdaWhitespace then lambdaEmoji: trim, collapse runs of two or more \s
+    // characters into a space, collapse runs of \R line breaks into a space, and
+    // drop every code point that is not a letter, number, punctuation or
+    // separator. Writes the result into buf and returns its length.
+    private static int removeWhitespaceAndEmoji(String text, char[] buf) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        int length = 0;
+        boolean inBreak = false;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+
+            // Runs of two or more \s characters become a single space, which
+            // also ends any run of line breaks
+            if (isWhitespace(c)) {
+                int j = i + 1;
+                while (j < end && isWhitespace(text.charAt(j))) j++;
+                if (j - i >= 2) {
+                    buf[length++] = ' ';
+                    inBreak = false;
+                    i = j;
+                    continue;
+                }
+            }
+
+            // A run of line breaks becomes a single space
+            if (isLineBreak(c)) {
+                if (!inBreak) buf[length++] = ' ';
+                inBreak = true;
+                i++;
+                continue;
+            }
+            inBreak = false;
+
+            int codePoint = c;
+            int width = 1;
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                width = 2;
+            }
+            if ((KEPT_TYPES >> Character.getType(codePoint) & 1) != 0) {
+                buf[length++] = c;
+                if (width == 2) buf[length++] = text.charAt(i + 1);
+            }
+            i += width;
+        }
+        return length;
+    }
+
+    // lambdaMentions: removes every '@' up to and including the run of spaces
+    // that follows it. A trailing mention without a following space is kept.
+    private static int removeMentions(char[] buf, int length) {
+        int read = 0;
+        int write = 0;
+        while (read < length) {
+            char c = buf[read];
+            if (c == '@') {
+                int space = indexOf(buf, ' ', read + 1, length);
+                if (space >= 0) {
+                    read = space;
+                    while (read < length && buf[read] == ' ') read++;
+                    continue;
+                }
+            }
+            buf[write++] = c;
+            read++;
+        }
+        return write;
+    }
+
+    // lambdaLinks: everything from the first "http" to the last space is
+    // replaced by a space, then everything from the first remaining "http" to
+    // the end is replaced by a space.
+    private static int removeLinks(char[] buf, int length) {
+        int link = indexOfHttp(buf, length);
+        if (link < 0) return length;
+
+        int lastSpace = -1;
+        for (int i = length - 1; i >= link + 4; i--) {
+            if (buf[i] == ' ') {
+                lastSpace = i;
+                break;
+            }
+        }
+        if (lastSpace >= 0) {
+            buf[link] = ' ';
+            int tail = length - lastSpace - 1;
+            System.arraycopy(buf, lastSpace + 1, buf, link + 1, tail);
+            length = link + 1 + tail;
+            link = indexOfHttp(buf, length);
+            if (link < 0) return length;
+        }
+        buf[link] = ' ';
+        return link + 1;
+    }
+
+    // lambdaSpecial followed by String.toLowerCase. The special characters are
+    // all ASCII. Lower casing is done per code point, which matches
+    // String.toLowerCase except for the context sensitive capital sigma, the
+    // dotted capital I and the Turkish, Azeri and Lithuanian locales. Those
+    // rare inputs take the String.toLowerCase path instead.
+    private static String removeSpecialAndLowerCase(char[] buf, int length, char[] out) {
+        if (!hasSpecialCasingLocale()) {
+            int size = 0;
+            int i = 0;
+            while (i < length) {
+                if (isSpecial(buf[i])) {
+                    i++;
+                    continue;
+                }
+                int codePoint = Character.codePointAt(buf, i, length);
+                if (codePoint == '\u03A3' || codePoint == '\u0130') break;
+                size += Character.toChars(Character.toLowerCase(codePoint), out, size);
+                i += Character.charCount(codePoint);
+            }
+            if (i >= length) return new String(out, 0, size);
+        }
+
+        // Copy without lower casing and leave the casing to String
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (!isSpecial(buf[i])) out[size++] = buf[i];
+        }
+        return new String(out, 0, size).toLowerCase();
+    }
+
+    // The \s character class: space, tab, line feed, vertical tab, form feed
+    // and carriage return
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // The characters matched by \R
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+                || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    // The characters removed by lambdaSpecial. Note that ";-=" in its
+    // character class is a range, so '<' and '=' are removed as well.
+    private static boolean isSpecial(char c) {
+        switch (c) {
+            case '\'': case '.': case '`': case '~': case '|': case '<': case '>':
+            case ',': case '/': case ':': case ';': case '=': case '+': case '_':
+            case '&': case '^': case '%': case '(': case ')': case '"':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean hasSpecialCasingLocale() {
+        String language = Locale.getDefault().getLanguage();
+        return language.equals("tr") || language.equals("az") || language.equals("lt");
+    }
+
+    private static int indexOf(char[] buf, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOfHttp(char[] buf, int length) {
+        for (int i = 0; i + 3 < length; i++) {
+            if (buf[i] == 'h' && buf[i + 1] == 't' && buf[i + 2] == 't' && buf[i + 3] == 'p') return i;
+        }
+        return -1;
+    }
+
+    // The original regular expression chain, kept as the reference for the
+    // golden test in TextNormalizerTest.
+    static String normalizeWithLambdas(String text) {
+        text = Preprocessing.lambdaWhitespace.removeWhitespace(text);
+        text = Preprocessing.lambdaEmoji.removeEmoji(text);
+        text = Preprocessing.lambdaMentions.removeMentions(text);
+        text = Preprocessing.lambdaLinks.removeLinks(text);
+        text = Preprocessing.lambdaSpecial.removeSpecialChar(text);
+        return text.toLowerCase();
+    }
+}
@@ -0,0 +1,128 @@
+import edu.stanford.nlp.ling.CoreLabel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per word lemma memory learned from full CoreNLP runs. Every space separated
+// word of an annotated String is mapped to the lemmas CoreNLP produced for it.
+// A word that was seen at least MIN_OCCURRENCES times, always with the same
+// lemmas, is considered stable. A String made only of stable words can then be
+// lemmatized by table lookups instead of POS tagging. Words that got different
+// lemmas in different contexts (eg. "saw"), or whose CoreNLP tokens cross word
+// boundaries, are marked ambiguous and always send the String back to the full
+// pipeline.
+// Words are stored in a ConcurrentHashMap, so learning from many annotating
+// threads does not serialize on a lock.
+public class TokenLemmaDictionary {
+
+    // Number of consistent sightings before a word is trusted
+    public static final int MIN_OCCURRENCES = 2;
+
+    private static final int AMBIGUOUS = -1;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>(1 << 12);
+
+    // Learns the lemmas of every word of str from the CoreNLP tokens of str.
+    // Tokens are matched to words by their character offsets. Safe to call
+    // from many threads, each word is updated on its own with merge.
+    public void learn(String str, List<CoreLabel> tokens) {
+        int tokenIndex = 0;
+        int wordStart = 0;
+        int length = str.length();
+        while (wordStart < length) {
+            int wordEnd = str.indexOf(' ', wordStart);
+            if (wordEnd < 0) wordEnd = length;
+            if (wordEnd == wordStart) {
+                wordStart++;
+                continue;
+            }
+
+            // Collect the tokens that lie inside the word
+            StringBuilder builder = new StringBuilder();
+            boolean crossesWords = false;
+            while (tokenIndex < tokens.size() && tokens.get(tokenIndex).beginPosition() < wordEnd) {
+                CoreLabel token = tokens.get(tokenIndex);
+                if (token.beginPosition() < wordStart || token.endPosition() > wordEnd) crossesWords = true;
+                builder.append(token.lemma()).append(' ');
+                if (token.endPosition() > wordEnd) break;
+                tokenIndex++;
+            }
+            entries.merge(str.substring(wordStart, wordEnd),
+                    new Entry(builder.toString(), crossesWords ? AMBIGUOUS : 1), Entry::combine);
+            wordStart = wordEnd + 1;
+        }
+    }
+
+    // Returns the lemmatized form of str if every word in it is stable, in the
+    // same format as LemmatizationEngine, or null if the full pipeline is
+    // needed.
+    public String lemmatize(String str) {
+        StringBuilder builder = new StringBuilder(str.length() + 16);
+        int wordStart = 0;
+        int length = str.length();
+        while (wordStart < length) {
+            int wordEnd = str.indexOf(' ', wordStart);
+            if (wordEnd < 0) wordEnd = length;
+            if (wordEnd > wordStart) {
+                Entry entry = entries.get(str.substring(wordStart, wordEnd));
+                if (entry == null || entry.count < MIN_OCCURRENCES) return null;
+                builder.append(entry.lemmas);
+            }
+            wordStart = wordEnd + 1;
+        }
+        return builder.toString();
+    }
+
+    // Number of distinct words seen
+    public int size() {
+        return entries.size();
+    }
+
+    // Writes the dictionary as tab separated word, lemmas and count lines
+    public void save(String fileName) throws IOException {
+        try (LineWriter out = new LineWriter(fileName, StandardCharsets.UTF_8, LineWriter.DEFAULT_BUFFER_SIZE)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeLine(entry.getKey() + "\t" + entry.getValue().lemmas + "\t" + entry.getValue().count);
+            }
+        }
+    }
+
+    // Adds the entries of a file written by save
+    public void load(String fileName) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 3) continue;
+                entries.merge(fields[0], new Entry(fields[1], Integer.parseInt(fields[2])), Entry::combine);
+            }
+        }
+    }
+
+    // The lemmas of a word and its number of sightings, or AMBIGUOUS.
+    // Immutable, so that merge can replace it atomically.
+    private static final class Entry {
+        final String lemmas;
+        final int count;
+
+        Entry(String lemmas, int count) {
+            this.lemmas = lemmas;
+            this.count = count;
+        }
+
+        // Adds the sightings of other if both agree on the lemmas, otherwise
+        // the word becomes ambiguous for good
+        static Entry combine(Entry entry, Entry other) {
+            if (entry.count == AMBIGUOUS) return entry;
+            if (other.count == AMBIGUOUS || !entry.lemmas.equals(other.lemmas))
+                return new Entry(entry.lemmas, AMBIGUOUS);
+            return new Entry(entry.lemmas, (int) Math.min(Integer.MAX_VALUE, (long) entry.count + other.count));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import opennlp.tools.ml.AbstractEventTrainer;
+import opennlp.tools.ml.EventTrainer;
+import opennlp.tools.ml.maxent.GISTrainer;
+import opennlp.tools.ml.naivebayes.NaiveBayesTrainer;
+import opennlp.tools.ml.perceptron.PerceptronTrainer;
+import opennlp.tools.util.TrainingParameters;
+
+import java.util.Locale;
+
+// Settings of the document categorizer trainer: the algorithm, the number of
+// training iterations, the cutoff (features seen fewer times are dropped),
+// the number of threads and the data indexer. The defaults are those of
+// TrainingParameters.defaultParams(), except that maxent uses one thread per
+// core. Only the maxent (GIS) trainer is multi-threaded, the other
+// algorithms ignore the thread count. The data indexer defaults to the two
+// pass one, which OpenNLP also uses when no indexer is set.
+// The one pass indexer reads every training event into memory before
+// indexing them. The two pass indexer counts the features on a first pass
+// while writing the events to a temporary file, then reads them back and
+// keeps only the events' feature indexes, with features under the cutoff
+// already dropped. It is slower but needs far less memory on large corpora.
+// Sources:
+// https://opennlp.apache.org/docs/1.9.4/manual/opennlp.html#tools.doccat.training.api
+// https://opennlp.apache.org/docs/1.9.4/apidocs/opennlp-tools/opennlp/tools/ml/model/TwoPassDataIndexer.html
+public class TrainingConfig {
+
+    public enum Algorithm {
+        MAXENT(GISTrainer.MAXENT_VALUE),
+        PERCEPTRON(PerceptronTrainer.PERCEPTRON_VALUE),
+        NAIVE_BAYES(NaiveBayesTrainer.NAIVE_BAYES_VALUE);
+
+        private final String parameterValue;
+
+        Algorithm(String parameterValue) {
+            this.parameterValue = parameterValue;
+        }
+
+        // Accepts maxent, perceptron and naivebayes (or naive-bayes), in any
+        // case. Throws IllegalArgumentException for anything else.
+        public static Algorithm parse(String name) {
+            switch (name.toLowerCase(Locale.ROOT).replace("-", "").replace("_", "")) {
+                case "maxent":
+                    return MAXENT;
+                case "perceptron":
+                    return PERCEPTRON;
+                case "naivebayes":
+                    return NAIVE_BAYES;
+                default:
+                    throw new IllegalArgumentException("Unknown training algorithm " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT).replace("_", "");
+        }
+    }
+
+    public enum Indexer {
+        ONE_PASS(AbstractEventTrainer.DATA_INDEXER_ONE_PASS_VALUE),
+        TWO_PASS(AbstractEventTrainer.DATA_INDEXER_TWO_PASS_VALUE);
+
+        private final String parameterValue;
+
+        Indexer(String parameterValue) {
+            this.parameterValue = parameterValue;
+        }
+
+        // Accepts onepass and twopass (or one-pass, two-pass), in any case.
+        // Throws IllegalArgumentException for anything else.
+        public static Indexer parse(String name) {
+            switch (name.toLowerCase(Locale.ROOT).replace("-", "").replace("_", "")) {
+                case "onepass":
+                    return ONE_PASS;
+                case "twopass":
+                    return TWO_PASS;
+                default:
+                    throw new IllegalArgumentException("Unknown data indexer " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT).replace("_", "");
+        }
+    }
+
+    private Algorithm algorithm = Algorithm.MAXENT;
+    private int iterations = 100;
+    private int cutoff = 5;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Indexer indexer = Indexer.TWO_PASS;
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public TrainingConfig setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Throws IllegalArgumentException if iterations is not positive
+    public TrainingConfig setIterations(int iterations) {
+        if (iterations < 1)
+            throw new IllegalArgumentException("Number of iterations must be positive");
+        this.iterations = iterations;
+        return this;
+    }
+
+    public int getCutoff() {
+        return cutoff;
+    }
+
+    // Throws IllegalArgumentException if cutoff is negative
+    public TrainingConfig setCutoff(int cutoff) {
+        if (cutoff < 0)
+            throw new IllegalArgumentException("Cutoff must not be negative");
+        this.cutoff = cutoff;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Throws IllegalArgumentException if threads is not positive
+    public TrainingConfig setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.threads = threads;
+        return this;
+    }
+
+    public Indexer getIndexer() {
+        return indexer;
+    }
+
+    public TrainingConfig setIndexer(Indexer indexer) {
+        this.indexer = indexer;
+        return this;
+    }
+
+    // Sets one setting from a key=value pair, eg. algorithm=perceptron,
+    // iterations=200, cutoff=2, threads=4 or indexer=twopass. Throws
+    // IllegalArgumentException for unknown keys or bad values.
+    public TrainingConfig set(String setting) {
+        int equals = setting.indexOf('=');
+        if (equals < 0)
+            throw new IllegalArgumentException("Training setting must be key=value: " + setting);
+        String key = setting.substring(0, equals).trim();
+        String value = setting.substring(equals + 1).trim();
+        switch (key) {
+            case "algorithm":
+                return setAlgorithm(Algorithm.parse(value));
+            case "iterations":
+                return setIterations(Integer.parseInt(value));
+            case "cutoff":
+                return setCutoff(Integer.parseInt(value));
+            case "threads":
+                return setThreads(Integer.parseInt(value));
+            case "indexer":
+                return setIndexer(Indexer.parse(value));
+            default:
+                throw new IllegalArgumentException("Unknown training setting " + key);
+        }
+    }
+
+    // Parses comma separated settings, eg. "algorithm=maxent,threads=4", on
+    // top of the defaults
+    public static TrainingConfig parse(String settings) {
+        TrainingConfig config = new TrainingConfig();
+        for (String setting : settings.split(",")) {
+            if (!setting.isBlank()) config.set(setting);
+        }
+        return config;
+    }
+
+    // Returns the OpenNLP trainer parameters for this configuration
+    public TrainingParameters toParameters() {
+        TrainingParameters parameters = new TrainingParameters();
+        parameters.put(TrainingParameters.ALGORITHM_PARAM, algorithm.parameterValue);
+        parameters.put(TrainingParameters.TRAINER_TYPE_PARAM, EventTrainer.EVENT_VALUE);
+        parameters.put(TrainingParameters.ITERATIONS_PARAM, iterations);
+        parameters.put(TrainingParameters.CUTOFF_PARAM, cutoff);
+        parameters.put(AbstractEventTrainer.DATA_INDEXER_PARAM, indexer.parameterValue);
+        if (algorithm == Algorithm.MAXENT)
+            parameters.put(TrainingParameters.THREADS_PARAM, threads);
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return "algorithm=" + algorithm + ",iterations=" + iterations + ",cutoff=" + cutoff + ",threads=" + threads
+                + ",indexer=" + indexer;
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Golden output test: TextNormalizer.normalize must return exactly what the
+// original lambda chain returns, on hand picked corner cases and on every
+// String cell of bitcointweets.csv.
+class TextNormalizerTest {
+
+    private static final String[] CORNER_CASES = {
+            "", " ", "\t", "a\tb", "a \tb", "a\t\tb", "a\nb", "a\r\nb", "a \u2028b", "a\u2028\u2029b",
+            "\n\u2028x", " \uD83D\uDE02 a", "a \uD83D\uDE02 b", "\uD83D", "x\uDE02y", "@", "a @b", "a @b @c",
+            "@a@b  c", "hi @x  @y z", "http", "a http b", "http a httpb", "see https://t.co/x now http",
+            "x.y,z;a<b=c>d'e\"f`g~h|i/j:k+l_m&n^o%p(q)r-s", "\u03A3\u0391\u03A3 \u03A3\u0391\u03A3", "\u0130stanbul", "\u00C0\u00C9\u00CE", "\u00A0a\u00A0",
+            "RT @user: Bitcoin \uD83D\uDE02\uD83D\uDE02 https://t.co/abc #BTC", "Hi @@_ are YOU seeking HELP?", "HEY!!111 \n <333"
+    };
+
+    @Test
+    void matchesLambdaChainOnCornerCases() {
+        for (String text : CORNER_CASES) {
+            assertEquals(TextNormalizer.normalizeWithLambdas(text), TextNormalizer.normalize(text),
+                    "Mismatch for [" + text + "]");
+        }
+    }
+
+    @Test
+    void matchesLambdaChainOnTweets() throws IOException {
+        Table dataFrame = Preprocessing.readCSV("src/main/bitcointweets.csv");
+        List<String> mismatches = new ArrayList<>();
+        int checked = 0;
+        for (StringColumn column : dataFrame.stringColumns()) {
+            for (int i = 0; i < column.size(); i++) {
+                String text = column.get(i);
+                String expected = TextNormalizer.normalizeWithLambdas(text);
+                String actual = TextNormalizer.normalize(text);
+                if (!expected.equals(actual))
+                    mismatches.add("[" + text + "]: expected [" + expected + "] but was [" + actual + "]");
+                checked++;
+            }
+        }
+        assertTrue(checked > 0, "No Strings read from bitcointweets.csv");
+        assertTrue(mismatches.isEmpty(), () -> mismatches.size() + " mismatches, first " + mismatches.get(0));
+    }
+}
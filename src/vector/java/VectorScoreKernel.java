@@ -0,0 +1,53 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// ScoreKernel on the incubating Vector API. Rows are padded to whole vectors
+// of the preferred species of the CPU, eg. 4 doubles with AVX2, so adding a
+// token is one vector load and add per vector of outcomes, 1 for the three
+// sentiments. exp runs on all lanes at once.
+// The Vector API may compute exp less exactly than Math.exp, and sums lanes
+// in another order, so probabilities can differ from the scalar ones in the
+// last bits. The scores themselves, and so the predictions, are the same.
+// Only usable when the JVM runs with --add-modules jdk.incubator.vector, so
+// CompiledDoccatModel only loads it by name after checking for the module.
+// Source:
+// https://openjdk.org/jeps/414
+final class VectorScoreKernel implements ScoreKernel {
+
+    // Constant, so the JIT compiles the operations to vector instructions
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final int stride;
+
+    VectorScoreKernel(int numOutcomes) {
+        stride = SPECIES.loopBound(numOutcomes + SPECIES.length() - 1);
+    }
+
+    @Override
+    public int getStride() {
+        return stride;
+    }
+
+    @Override
+    public void add(double[] weights, int row, double[] scores) {
+        for (int i = 0; i < stride; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, scores, i)
+                    .add(DoubleVector.fromArray(SPECIES, weights, row + i))
+                    .intoArray(scores, i);
+        }
+    }
+
+    @Override
+    public void softmax(double[] scores, double scale) {
+        double sum = 0;
+        for (int i = 0; i < stride; i += SPECIES.length()) {
+            DoubleVector exp = DoubleVector.fromArray(SPECIES, scores, i).div(scale).lanewise(VectorOperators.EXP);
+            exp.intoArray(scores, i);
+            sum += exp.reduceLanes(VectorOperators.ADD);
+        }
+        for (int i = 0; i < stride; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, scores, i).div(sum).intoArray(scores, i);
+        }
+    }
+}